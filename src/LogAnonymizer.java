@@ -1,16 +1,21 @@
+import data.CsvTokenizer;
+
 import java.io.*;
 import java.util.*;
 import java.util.regex.*;
 import java.util.stream.Collectors;
 
 public class LogAnonymizer {
+  // 32-character hex IDs of actors
+  private static final Pattern ID_PATTERN = Pattern.compile("[a-f0-9]{32}");
 
   public static void transformLog(String inputPath, String outputPath,
                                   String subMappingPath, String actorMappingPath) throws IOException {
 
-    List<String[]> allLines = new ArrayList<>();
     Map<String, String> actorMap = new LinkedHashMap<>();
     Map<String, String> submissionMap = new LinkedHashMap<>();
+    // Splits the lines respecting quotes for parameters
+    CsvTokenizer parts = new CsvTokenizer();
 
     // --- PASS 1: Build Global Mappings ---
     try (BufferedReader reader = new BufferedReader(new FileReader(inputPath))) {
@@ -20,21 +25,17 @@ public class LogAnonymizer {
       int subCounter = 1;
 
       while ((line = reader.readLine()) != null) {
-        // Split respecting quotes for parameters
-        String[] parts = line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-        if (parts.length < 4) continue;
+        int nParts = parts.tokenize(line);
+        if (nParts < 4) continue;
 
-        String subId = parts[0].trim();
-        String personId = parts[2].trim();
-        String action = parts[3].trim();
-        String params = parts.length > 4 ? parts[4].trim() : "";
+        String subId = parts.getTrimmedField(0);
+        String personId = parts.getTrimmedField(2);
+        String action = parts.getTrimmedField(3);
+        String params = nParts > 4 ? parts.getTrimmedField(4) : "";
 
         // 1) Skip lines where Action includes "submission"
         if (action.toLowerCase().contains("submission")) continue;
 
-        // Store line for second pass
-        allLines.add(parts);
-
         // 2) Map Submission ID
         if (!submissionMap.containsKey(subId)) {
           submissionMap.put(subId, String.format("Sub%03d", subCounter++));
@@ -58,16 +59,25 @@ public class LogAnonymizer {
         .collect(Collectors.toList());
 
     // --- PASS 2: Global Anonymization and Writing ---
-    try (PrintWriter writer = new PrintWriter(new FileWriter(outputPath))) {
+    // The input is read again instead of keeping all lines in memory
+    try (BufferedReader reader = new BufferedReader(new FileReader(inputPath));
+         PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(outputPath)))) {
       // New header as requested
       writer.println("Submission ID,Date (UTC),Actor,Action,Action parameters");
 
-      for (String[] parts : allLines) {
-        String subId = submissionMap.get(parts[0].trim());
-        String date = parts[1].trim();
-        String actor = actorMap.get(parts[2].trim());
-        String action = parts[3].trim();
-        String params = parts.length > 4 ? parts[4].trim() : "";
+      String line = reader.readLine(); // Skip original header
+      while ((line = reader.readLine()) != null) {
+        int nParts = parts.tokenize(line);
+        if (nParts < 4) continue;
+
+        String subId = submissionMap.get(parts.getTrimmedField(0));
+        String date = parts.getTrimmedField(1);
+        String actor = actorMap.get(parts.getTrimmedField(2));
+        String action = parts.getTrimmedField(3);
+        String params = nParts > 4 ? parts.getTrimmedField(4) : "";
+
+        // the same lines as in the first pass are skipped
+        if (action.toLowerCase().contains("submission")) continue;
 
         // Replace all occurrences of registered actors in Action and Parameters
         for (String originalId : sortedActorKeys) {
@@ -80,7 +90,7 @@ public class LogAnonymizer {
           }
         }
 
-        writer.printf("%s,%s,%s,\"%s\",\"%s\"%n", subId, date, actor, action, params);
+        writeLine(writer, subId, date, actor, action, params);
       }
     }
 
@@ -94,7 +104,7 @@ public class LogAnonymizer {
    */
   private static int scanForIds(String text, Map<String, String> map, int counter) {
     if (text == null || text.isEmpty()) return counter;
-    Matcher m = Pattern.compile("[a-f0-9]{32}").matcher(text);
+    Matcher m = ID_PATTERN.matcher(text);
     while (m.find()) {
       String id = m.group();
       if (!map.containsKey(id)) {
@@ -104,6 +114,24 @@ public class LogAnonymizer {
     return counter;
   }
 
+  /**
+   * Writes a line in the form subId,date,actor,"action","params"; the same as printf with
+   * the format "%s,%s,%s,\"%s\",\"%s\"%n" but without parsing the format for each line.
+   */
+  private static void writeLine(PrintWriter writer, String subId, String date, String actor,
+                                String action, String params) {
+    writer.print(subId);
+    writer.print(',');
+    writer.print(date);
+    writer.print(',');
+    writer.print(actor);
+    writer.print(",\"");
+    writer.print(action);
+    writer.print("\",\"");
+    writer.print(params);
+    writer.println('"');
+  }
+
   private static void writeMapping(String path, String header, Map<String, String> map) throws IOException {
     try (PrintWriter writer = new PrintWriter(new FileWriter(path))) {
       writer.println(header);
@@ -123,8 +151,11 @@ public class LogAnonymizer {
         Pattern.CASE_INSENSITIVE
     );
 
+    // Splits the lines by comma, respecting quotes
+    CsvTokenizer parts = new CsvTokenizer();
+
     try (BufferedReader reader = new BufferedReader(new FileReader(inputPath));
-         PrintWriter writer = new PrintWriter(new FileWriter(outputPath))) {
+         PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(outputPath)))) {
 
       String line = reader.readLine(); // Header
       if (line != null) writer.println(line);
@@ -138,18 +169,17 @@ public class LogAnonymizer {
           line += "\"";
         }
 
-        // Split by comma, respecting quotes
-        String[] parts = line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-        if (parts.length < 4) {
+        int nParts = parts.tokenize(line);
+        if (nParts < 4) {
           // If split fails due to formatting, write line as is or skip
           continue;
         }
 
-        String subId = parts[0].trim();
-        String date = parts[1].trim();
-        String actor = parts[2].trim();
-        String action = parts[3].trim().replace("\"", "");
-        String params = (parts.length > 4) ? parts[4].trim().replace("\"", "") : "";
+        String subId = parts.getTrimmedField(0);
+        String date = parts.getTrimmedField(1);
+        String actor = parts.getTrimmedField(2);
+        String action = parts.getTrimmedField(3).replace("\"", "");
+        String params = (nParts > 4) ? parts.getTrimmedField(4).replace("\"", "") : "";
 
         // 1) Standardize Dates: Replace 'T' and truncate milliseconds
         // Handles: 2025-02-08T07:37:49.628000 -> 2025-02-08 07:37:49
@@ -178,7 +208,7 @@ public class LogAnonymizer {
 
         // Write refined line back to CSV format
         // Fields are wrapped in quotes to handle any internal commas (like in batch assignments)
-        writer.printf("%s,%s,%s,\"%s\",\"%s\"%n", subId, date, actor, action, params);
+        writeLine(writer, subId, date, actor, action, params);
       }
     }
   }
@@ -198,24 +228,25 @@ public class LogAnonymizer {
 
     // State for deduplication
     String lastDecisionKey = "";
+    // Splits the lines by comma, respecting quotes
+    CsvTokenizer parts = new CsvTokenizer();
 
     try (BufferedReader reader = new BufferedReader(new FileReader(inputPath));
-         PrintWriter writer = new PrintWriter(new FileWriter(outputPath))) {
+         PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(outputPath)))) {
 
       String header = reader.readLine();
       if (header != null) writer.println(header);
 
       String line;
       while ((line = reader.readLine()) != null) {
-        // Split by comma, respecting quotes
-        String[] parts = line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-        if (parts.length < 4) continue;
+        int nParts = parts.tokenize(line);
+        if (nParts < 4) continue;
 
-        String subId = parts[0].trim();
-        String date  = parts[1].trim();
-        String actor = parts[2].trim();
-        String action = parts[3].trim().replace("\"", "");
-        String params = (parts.length > 4) ? parts[4].trim().replace("\"", "") : "";
+        String subId = parts.getTrimmedField(0);
+        String date  = parts.getTrimmedField(1);
+        String actor = parts.getTrimmedField(2);
+        String action = parts.getTrimmedField(3).replace("\"", "");
+        String params = (nParts > 4) ? parts.getTrimmedField(4).replace("\"", "") : "";
 
         // --- 1. Deduplication of "set decision" / "sets decision" ---
         Matcher decisionMatcher = decisionPattern.matcher(action);
@@ -261,8 +292,7 @@ public class LogAnonymizer {
         }
 
         // Write the cleaned and separated line
-        writer.printf("%s,%s,%s,\"%s\",\"%s\"%n",
-            subId, date, actor, action, params);
+        writeLine(writer, subId, date, actor, action, params);
       }
     }
   }
@@ -1,4 +1,7 @@
 import data.LogLoader;
+import data.LogTailer;
+import data.PhaseRuleDefinitions;
+import data.ProcessSnapshot;
 import data.StatusChecker;
 import structures.*;
 import viz.*;
@@ -24,6 +27,13 @@ public class Main {
       String actionsEncodingFilePath = null;
       String actorsMappingFilePath = null;
       String logFilePath = null;
+      String snapshotFilePath = null;
+      String phaseRulesFilePath = null;
+      boolean useSnapshot = true;
+      boolean parallelLoading = false;
+      boolean followLog = false;
+      boolean parallelChecking = false;
+      int nThreads = Runtime.getRuntime().availableProcessors();
 
       try (BufferedReader reader = new BufferedReader(new FileReader(configFile))) {
         String line;
@@ -53,6 +63,31 @@ public class Main {
             case "logFilePath":
               logFilePath = value;
               break;
+            case "snapshotFilePath":
+              snapshotFilePath = value;
+              break;
+            case "phaseRulesFilePath":
+              phaseRulesFilePath = value;
+              break;
+            case "useSnapshot":
+              useSnapshot = Boolean.parseBoolean(value);
+              break;
+            case "parallelLoading":
+              parallelLoading = Boolean.parseBoolean(value);
+              break;
+            case "followLog":
+              followLog = Boolean.parseBoolean(value);
+              break;
+            case "parallelChecking":
+              parallelChecking = Boolean.parseBoolean(value);
+              break;
+            case "nThreads":
+              try {
+                nThreads = Integer.parseInt(value);
+              } catch (NumberFormatException ex) {
+                System.out.println("Invalid number of threads: " + value);
+              }
+              break;
             default:
               System.out.println("Unknown key: " + key);
           }
@@ -69,62 +104,103 @@ public class Main {
       System.out.println("actorsMappingFilePath = " + actorsMappingFilePath);
       System.out.println("logFilePath = " + logFilePath);
 
+      // The loaded model is saved in a snapshot, which is used instead of the source files
+      // as long as none of them changes
+      if (snapshotFilePath == null && logFilePath != null)
+        snapshotFilePath = logFilePath + ".snapshot";
+      // The conditions of phase completeness may be redefined in a file next to the configuration file
+      if (phaseRulesFilePath == null) {
+        File rulesFile = PhaseRuleDefinitions.getRulesFile(configFile);
+        if (rulesFile != null)
+          phaseRulesFilePath = rulesFile.getPath();
+      }
+      PhaseRuleDefinitions phaseRules = PhaseRuleDefinitions.load(phaseRulesFilePath);
+      if (phaseRules != null)
+        System.out.println("Loaded the rules of " + phaseRules.size() + " phases from " + phaseRulesFilePath);
+      File rolesFile = LogLoader.getRolesFile(actorsMappingFilePath);
+      java.util.List<String> sourcePaths = Arrays.asList(phasesFilePath, actionsMappingFilePath, actionsEncodingFilePath,
+          actorsMappingFilePath, logFilePath, (rolesFile == null) ? null : rolesFile.getPath(), phaseRulesFilePath);
+
       LogLoader loader = new LogLoader();
-      GlobalProcess gProc=new GlobalProcess();
-
-      try {
-        loader.loadPhaseTimetable(phasesFilePath);
-        loader.loadActionPhaseMapping(actionsMappingFilePath);
-        loader.loadActionToRolesMapping(actorsMappingFilePath);
-        loader.loadActionEncodings(actionsEncodingFilePath);
-        loader.loadLog(logFilePath);
-
-        gProc.actionTypes=loader.getActionTypes();
-        gProc.phases=loader.getPhases();
-        gProc.actorRoles=loader.getActorRoles();
-        gProc.actors=loader.getActors();
-
-        System.out.println("Loaded action types:");
-        for (String action : gProc.actionTypes.keySet()) {
-            System.out.println(" - " + action);
-        }
+      // an incomplete last line of a followed log is read by the LogTailer when it is complete
+      loader.holdIncompleteLastLine = followLog;
+      GlobalProcess gProc = (useSnapshot) ? ProcessSnapshot.load(snapshotFilePath, sourcePaths) : null;
+      boolean fromSnapshot = gProc != null, loaded = fromSnapshot;
+
+      if (fromSnapshot)
+        System.out.println("Loaded the process model from the snapshot " + snapshotFilePath +
+            "; total number of processes: " + gProc.processes.size());
+      else {
+        gProc=new GlobalProcess();
+        try {
+          loader.loadPhaseTimetable(phasesFilePath);
+          loader.loadActionPhaseMapping(actionsMappingFilePath);
+          loader.loadActionToRolesMapping(actorsMappingFilePath);
+          loader.loadActionEncodings(actionsEncodingFilePath);
+          if (parallelLoading)
+            loaded = loader.loadLogParallel(logFilePath, nThreads);
+          else
+            loaded = loader.loadLog(logFilePath);
+          if (!loaded)
+            throw new IOException("failed to load " + logFilePath);
+
+          gProc.actionTypes=loader.getActionTypes();
+          gProc.phases=loader.getPhases();
+          gProc.actorRoles=loader.getActorRoles();
+          gProc.actors=loader.getActors();
+          gProc.symbols=loader.getSymbols();
+
+          System.out.println("Loaded action types:");
+          for (String action : gProc.actionTypes.keySet()) {
+              System.out.println(" - " + action);
+          }
 
-        System.out.println("Loaded phases:");
-        for (String phase : gProc.phases.keySet()) {
-          System.out.println(" - " + phase);
-        }
+          System.out.println("Loaded phases:");
+          for (String phase : gProc.phases.keySet()) {
+            System.out.println(" - " + phase);
+          }
 
-        System.out.println("Action Type to Phase Mapping:");
-        for (Map.Entry<String, ActionType> entry : gProc.actionTypes.entrySet()) {
-          System.out.println(entry.getKey() + " => " + entry.getValue().phaseName);
-        }
+          System.out.println("Action Type to Phase Mapping:");
+          for (Map.Entry<String, ActionType> entry : gProc.actionTypes.entrySet()) {
+            System.out.println(entry.getKey() + " => " + entry.getValue().phaseName);
+          }
 
-        System.out.println("Action Type to Actor Roles Mapping:");
-        for (Map.Entry<String, ActionType> entry : gProc.actionTypes.entrySet()) {
-          System.out.println(entry.getKey() + " => " + entry.getValue().actorRole);
-        }
-        /*
-        if (loader.getActorRoles()!=null && !loader.getActorRoles().isEmpty()) {
-          System.out.println("Loaded roles of actors:");
-          for (String role : gProc.actorRoles) {
-            System.out.println("ROLE \"" + role+"\":");
-            Set<Actor> actors=gProc.getActorsByRole(role);
-            for (Actor actor:actors)
-              System.out.println(actor.id);
+          System.out.println("Action Type to Actor Roles Mapping:");
+          for (Map.Entry<String, ActionType> entry : gProc.actionTypes.entrySet()) {
+            System.out.println(entry.getKey() + " => " + entry.getValue().actorRole);
           }
-        }
-        */
+          /*
+          if (loader.getActorRoles()!=null && !loader.getActorRoles().isEmpty()) {
+            System.out.println("Loaded roles of actors:");
+            for (String role : gProc.actorRoles) {
+              System.out.println("ROLE \"" + role+"\":");
+              Set<Actor> actors=gProc.getActorsByRole(role);
+              for (Actor actor:actors)
+                System.out.println(actor.id);
+            }
+          }
+          */
 
-        gProc.processes =loader.getProcesses();
+          gProc.processes =loader.getProcesses();
 
-        System.out.println("Total number of processes loaded: " + gProc.processes.size());
+          System.out.println("Total number of processes loaded: " + gProc.processes.size());
 
-      } catch (IOException e) {
-        System.err.println("Error reading the log file: " + e.getMessage());
+        } catch (IOException e) {
+          System.err.println("Error reading the log file: " + e.getMessage());
+        }
       }
       if (gProc.phases!=null && !gProc.phases.isEmpty()) {
-        StatusChecker checker=new StatusChecker(gProc);
-        checker.determinePhaseCompletenessDates();
+        if (!fromSnapshot) {
+          StatusChecker checker=new StatusChecker(gProc);
+          checker.setRuleDefinitions(phaseRules);
+          if (parallelChecking)
+            checker.setNThreads(nThreads);
+          checker.determinePhaseCompletenessDates();
+          // a model without the incomplete last line of the log would not match the file
+          if (useSnapshot && loaded && gProc.processes != null && !gProc.processes.isEmpty() &&
+              loader.getLogLength() == new File(logFilePath).length())
+            ProcessSnapshot.save(gProc, snapshotFilePath, sourcePaths);
+        }
 
         SelectionManager selectionManager=new SelectionManager();
         JPanel processPanel=new ProcessTimelineWithControls(gProc,selectionManager);
@@ -166,6 +242,16 @@ public class Main {
         overviewFrame.add(splitPane);
         overviewFrame.setSize(1000, 850); // Increased height slightly to accommodate both
         overviewFrame.setVisible(true);
+
+        // Records appended to the log are applied to the model and shown in the open views
+        if (followLog && logFilePath != null)
+          if (!fromSnapshot || loader.attach(gProc, logFilePath)) {
+            LogTailer tailer = new LogTailer(loader, gProc, logFilePath, SwingUtilities::invokeLater);
+            tailer.setRuleDefinitions(phaseRules);
+            tailer.start();
+          }
+          else
+            System.out.println("Cannot follow the log file " + logFilePath);
       }
     }
 
@@ -0,0 +1,165 @@
+package data;
+
+/**
+ * Splits lines of a CSV file into fields according to RFC 4180: a field may be enclosed
+ * in double quotes, and then it may contain commas and quotes escaped by doubling ("").
+ * A line is scanned once; the positions of the fields are kept in arrays that are reused
+ * for all lines, so no objects are created per line. Strings are created only for the fields
+ * that are requested, and a field can also be accessed as a range of characters of the line.
+ * An instance must be used by one thread.
+ */
+
+public class CsvTokenizer {
+  public static final char QUOTE='"';
+
+  private char delimiter=',';
+  private CharSequence line=null;
+  private int nFields=0;
+  // Range of the content of each field (without the enclosing quotes)
+  private int starts[]=new int[16], ends[]=new int[16];
+  // Whether the content of the field needs unquoting (escaped quotes or text after the closing quote)
+  private boolean escaped[]=new boolean[16];
+
+  public CsvTokenizer() {}
+
+  public CsvTokenizer(char delimiter) {
+    this.delimiter=delimiter;
+  }
+
+  public int tokenize(CharSequence line) {
+    return (line==null)?tokenize("",0,0):tokenize(line,0,line.length());
+  }
+
+  /**
+   * Splits the characters from position 'from' (inclusive) to 'to' (exclusive) into fields.
+   * Returns the number of fields.
+   */
+  public int tokenize(CharSequence text, int from, int to) {
+    line=text;
+    nFields=0;
+    int pos=from;
+    while (true) {
+      if (nFields>=starts.length)
+        grow();
+      int p=pos;
+      while (p<to && text.charAt(p)==' ')
+        ++p;
+      if (p<to && text.charAt(p)==QUOTE) {
+        int start=p+1, end=-1;
+        boolean esc=false, trailing=false;
+        p=start;
+        while (p<to && end<0)
+          if (text.charAt(p)==QUOTE)
+            if (p+1<to && text.charAt(p+1)==QUOTE) {
+              esc=true;
+              p+=2;
+            }
+            else
+              end=p++;
+          else
+            ++p;
+        if (end<0) // the closing quote is missing
+          end=to;
+        while (p<to && text.charAt(p)!=delimiter) {
+          if (text.charAt(p)!=' ')
+            trailing=true;
+          ++p;
+        }
+        starts[nFields]=start;
+        ends[nFields]=(trailing)?p:end;
+        escaped[nFields++]=esc || trailing;
+      }
+      else {
+        p=pos;
+        while (p<to && text.charAt(p)!=delimiter)
+          ++p;
+        starts[nFields]=pos;
+        ends[nFields]=p;
+        escaped[nFields++]=false;
+      }
+      if (p>=to)
+        break;
+      pos=p+1; // skip the delimiter
+    }
+    return nFields;
+  }
+
+  private void grow() {
+    int n=starts.length*2;
+    starts=java.util.Arrays.copyOf(starts,n);
+    ends=java.util.Arrays.copyOf(ends,n);
+    escaped=java.util.Arrays.copyOf(escaped,n);
+  }
+
+  public int getFieldCount() {
+    return nFields;
+  }
+
+  /**
+   * The text that has been tokenized last; the positions of the fields refer to it.
+   */
+  public CharSequence getLine() {
+    return line;
+  }
+
+  public int getStart(int idx) {
+    return starts[idx];
+  }
+
+  public int getEnd(int idx) {
+    return ends[idx];
+  }
+
+  /**
+   * Whether the field needs unquoting, i.e., its value differs from the characters between getStart and getEnd.
+   */
+  public boolean isEscaped(int idx) {
+    return escaped[idx];
+  }
+
+  public String getField(int idx) {
+    if (idx<0 || idx>=nFields)
+      return null;
+    if (!escaped[idx])
+      return line.subSequence(starts[idx],ends[idx]).toString();
+    // the range starts after the opening quote; it may include the closing quote and the text after it
+    StringBuilder sb=new StringBuilder(ends[idx]-starts[idx]);
+    boolean inQuotes=true;
+    for (int p=starts[idx]; p<ends[idx]; p++) {
+      char c=line.charAt(p);
+      if (c==QUOTE)
+        if (inQuotes && p+1<ends[idx] && line.charAt(p+1)==QUOTE) {
+          sb.append(QUOTE);
+          ++p;
+        }
+        else
+          inQuotes=!inQuotes;
+      else
+        sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the value of the field without leading and trailing whitespace.
+   */
+  public String getTrimmedField(int idx) {
+    if (idx<0 || idx>=nFields)
+      return null;
+    if (escaped[idx])
+      return getField(idx).trim();
+    int s=starts[idx], e=ends[idx];
+    while (s<e && line.charAt(s)<=' ')
+      ++s;
+    while (e>s && line.charAt(e-1)<=' ')
+      --e;
+    return line.subSequence(s,e).toString();
+  }
+
+  public String[] getFields() {
+    String fields[]=new String[nFields];
+    for (int i=0; i<nFields; i++)
+      fields[i]=getField(i);
+    return fields;
+  }
+}
@@ -0,0 +1,203 @@
+package data;
+
+import structures.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Phase rule made from a definition in the phase rules file (see PhaseRuleDefinitions):
+ * the phase is complete when enough tasks of the given action classes, in the threads
+ * of the given roles and within the given dates, have been found.
+ * The names in the definition are turned into bit masks and the dates into day numbers
+ * when the rule is made, so that checking a task costs a few comparisons.
+ */
+
+public class DeclaredPhaseRule extends PhaseRule {
+  public static final int DATE_NTH=0, DATE_EARLIEST=1, DATE_LATEST=2;
+
+  // Role classes required (any of) and excluded for the thread role and for the actor's general role
+  protected int threadRoles=0, threadRolesExcluded=0, actorRoles=0, actorRolesExcluded=0;
+  // Action classes of the tasks (any of)
+  protected int actions=0;
+  protected boolean completeOnly=false, firstPerThread=false, markDelayed=true, lifetimeOtherwise=true;
+  // The allowed days of the task starts (inclusive)
+  protected long minDay=Long.MIN_VALUE, maxDay=Long.MAX_VALUE;
+  protected int count=1;
+  protected int dateMode=DATE_NTH;
+
+  // the state of the current process
+  private int nFound=0;
+  private long earliest=Long.MAX_VALUE, latest=Long.MIN_VALUE;
+  // the smallest days found, in ascending order
+  private long smallest[]=null;
+  private boolean threadDone=false;
+
+  /**
+   * Makes the rule from the definition; throws IllegalArgumentException if the definition is wrong.
+   */
+  public DeclaredPhaseRule(Phase phase, PhaseRuleDefinitions.Definition def, StatusChecker checker) {
+    super(phase,checker);
+    String value=def.get("threads");
+    if (value!=null)
+      for (String token:split(value)) {
+        boolean exclude=token.startsWith("!");
+        if (exclude)
+          token=token.substring(1).trim();
+        boolean ofActor=token.toLowerCase().startsWith("actor:");
+        if (ofActor)
+          token=token.substring(6).trim();
+        int roleClass=getRoleClass(token);
+        if (ofActor)
+          if (exclude) actorRolesExcluded|=roleClass; else actorRoles|=roleClass;
+        else
+          if (exclude) threadRolesExcluded|=roleClass; else threadRoles|=roleClass;
+      }
+    value=def.get("actions");
+    if (value==null)
+      throw new IllegalArgumentException("no actions");
+    for (String token:split(value))
+      actions|=getActionClass(token);
+    completeOnly=Boolean.parseBoolean(def.get("complete"));
+    value=def.get("after");
+    if (value!=null)
+      minDay=Math.max(minDay,getDay(value)+1);
+    value=def.get("from");
+    if (value!=null)
+      minDay=Math.max(minDay,getDay(value));
+    value=def.get("before");
+    if (value!=null)
+      maxDay=Math.min(maxDay,getDay(value)-1);
+    value=def.get("until");
+    if (value!=null)
+      maxDay=Math.min(maxDay,getDay(value));
+    value=def.get("perThread");
+    if (value!=null)
+      if (value.equalsIgnoreCase("first"))
+        firstPerThread=true;
+      else
+      if (!value.equalsIgnoreCase("all"))
+        throw new IllegalArgumentException("perThread="+value);
+    value=def.get("count");
+    if (value!=null)
+      try {
+        count=Integer.parseInt(value);
+      } catch (NumberFormatException ex) {
+        throw new IllegalArgumentException("count="+value);
+      }
+    if (count<1)
+      throw new IllegalArgumentException("count="+value);
+    value=def.get("date");
+    if (value!=null)
+      if (value.equalsIgnoreCase("nth")) dateMode=DATE_NTH;
+      else if (value.equalsIgnoreCase("earliest")) dateMode=DATE_EARLIEST;
+      else if (value.equalsIgnoreCase("latest")) dateMode=DATE_LATEST;
+      else throw new IllegalArgumentException("date="+value);
+    value=def.get("delayed");
+    if (value!=null)
+      markDelayed=!value.equalsIgnoreCase("none");
+    value=def.get("otherwise");
+    if (value!=null)
+      lifetimeOtherwise=!value.equalsIgnoreCase("none");
+    if (dateMode==DATE_NTH)
+      smallest=new long[count];
+  }
+
+  private static String[] split(String value) {
+    return value.trim().split("\\s*[,\\s]\\s*");
+  }
+
+  public static int getRoleClass(String name) {
+    switch (name.toUpperCase()) {
+      case "PAPER_CHAIR": return GlobalProcess.PAPER_CHAIR_ROLE;
+      case "PRIMARY": return GlobalProcess.PRIMARY_ROLE;
+      case "SECONDARY": return GlobalProcess.SECONDARY_ROLE;
+      case "PC_MEMBER": return GlobalProcess.PC_MEMBER_ROLE;
+      case "EXTERNAL": return GlobalProcess.EXTERNAL_ROLE;
+    }
+    throw new IllegalArgumentException("unknown role class "+name);
+  }
+
+  public static int getActionClass(String name) {
+    switch (name.toUpperCase()) {
+      case "ASSIGNMENT": return ActionType.ASSIGNMENT;
+      case "ASSIGNMENT_AS_ROLE": return ActionType.ASSIGNMENT_AS_ROLE;
+      case "CLEAR_ALL": return ActionType.CLEAR_ALL;
+      case "ROLE_CHANGE": return ActionType.ROLE_CHANGE;
+      case "REVIEW_RELATED": return ActionType.REVIEW_RELATED;
+      case "REVIEW": return ActionType.REVIEW;
+      case "COMMENT": return ActionType.COMMENT;
+      case "DECISION": return ActionType.DECISION;
+      case "ACCEPT": return ActionType.ACCEPT;
+      case "DECLINE": return ActionType.DECLINE;
+      case "INVITATION": return ActionType.INVITATION;
+    }
+    throw new IllegalArgumentException("unknown action class "+name);
+  }
+
+  /**
+   * Returns the day of "<phase>.start" or "<phase>.end" as the number of days since 1970-01-01.
+   */
+  private long getDay(String ref) {
+    int idx=ref.lastIndexOf('.');
+    if (idx<0)
+      throw new IllegalArgumentException("expected <phase>.start or <phase>.end: "+ref);
+    String name=ref.substring(0,idx).trim(), which=ref.substring(idx+1).trim();
+    Phase p=(name.equalsIgnoreCase("this"))?phase:gProc.phases.get(name);
+    if (p==null)
+      throw new IllegalArgumentException("unknown phase "+name);
+    if (which.equalsIgnoreCase("start"))
+      return p.startDate.toEpochDay();
+    if (which.equalsIgnoreCase("end"))
+      return p.endDate.toEpochDay();
+    throw new IllegalArgumentException("expected <phase>.start or <phase>.end: "+ref);
+  }
+
+  protected void begin(ProcessInstance process) {
+    super.begin(process);
+    nFound=0;
+    earliest=Long.MAX_VALUE;
+    latest=Long.MIN_VALUE;
+  }
+
+  protected boolean startThread(ProcessThread th, int actorRoleClasses) {
+    if (actorRoles!=0 && (actorRoleClasses & actorRoles)==0 || (actorRoleClasses & actorRolesExcluded)!=0)
+      return false;
+    if (threadRoles!=0 && !hasRole(th,threadRoles) || hasRole(th,threadRolesExcluded))
+      return false;
+    threadDone=false;
+    return true;
+  }
+
+  protected void visitTask(TaskInstance task, LocalDate day) {
+    if (threadDone || !is(task,actions))
+      return;
+    long d=day.toEpochDay();
+    if (d<minDay || d>maxDay || completeOnly && !isComplete(task))
+      return;
+    threadDone=firstPerThread;
+    if (markDelayed)
+      setDelayed(task,isAfterEnd(day),0);
+    earliest=Math.min(earliest,d);
+    latest=Math.max(latest,d);
+    if (smallest!=null) {
+      int n=Math.min(nFound,count);
+      if (n<count || d<smallest[n-1]) {
+        int pos=Arrays.binarySearch(smallest,0,n,d);
+        if (pos<0) pos=-pos-1;
+        int nMove=Math.min(n,count-1)-pos;
+        if (nMove>0)
+          System.arraycopy(smallest,pos,smallest,pos+1,nMove);
+        smallest[pos]=d;
+      }
+    }
+    ++nFound;
+  }
+
+  protected LocalDate finish() {
+    if (nFound<count)
+      return (lifetimeOtherwise)?getLifetimeEnd():null;
+    long d=(dateMode==DATE_EARLIEST)?earliest:(dateMode==DATE_LATEST)?latest:smallest[count-1];
+    return LocalDate.ofEpochDay(d);
+  }
+}
@@ -3,11 +3,21 @@ package data;
 import structures.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.*;
 
 public class LogLoader {
@@ -17,6 +27,31 @@ public class LogLoader {
   private Map<String, ActionType> actionTypes = new LinkedHashMap<>();
   private List<String> actorRoles = null;
   private Map<String, Phase> phases = new LinkedHashMap<>();
+  // Canonical strings and codes of action types, roles, statuses, outcomes and actor IDs
+  private SymbolTable symbols=new SymbolTable();
+
+  // Maximal size of a chunk of the log file parsed by one thread in the parallel loading
+  public static long MAX_CHUNK_SIZE=64L*1024*1024;
+
+  // State of the log parsing: the header fields, the column numbers of the relevant fields,
+  // and the format of the dates, determined from the first lines of the log
+  private String fieldNames[]=null;
+  private int processIdCN=-1, dateCN=-1, actionIdCN=-1, actionTypeCN=-1, actorIdCN=-1, actorRoleCN=-1,
+      targetTypeCN=-1, targetIdCN=-1, outcomeCN=-1, statusCN=-1, paramCN=-1;
+  private DateTimeFormatter dateTimeFormatter=null;
+  // Splits the log lines processed sequentially into fields
+  private CsvTokenizer tokenizer=new CsvTokenizer();
+  // Layout of the timestamps for the TimestampParser, or -1 if only the formatter can be used
+  private int timeLayout=-1;
+  private int nTaskInstances=0;
+  // Number of bytes of the log file that have been loaded; the following bytes can be appended later
+  private long logLength=0;
+  // Whether the loading stops after the last complete line of the log, which must be done when the log
+  // is followed (see LogTailer), so that the rest of an incomplete line is not read as another record
+  public boolean holdIncompleteLastLine=false;
+  // Processes and actors changed by the records appended after the loading; null during the loading
+  private Set<ProcessInstance> changedProcesses=null;
+  private Set<Actor> changedActors=null;
 
   public static DateTimeFormatter dateFormatters[]= {
       DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC),
@@ -34,6 +69,13 @@ public class LogLoader {
   public static DateTimeFormatter getSuitableFormatter(String dateStr) {
     if (dateStr==null || dateStr.trim().length()<1)
       return null;
+    if (dateStr.indexOf('T')<0) {
+      int layout=TimestampParser.detectLayout(dateStr);
+      if (layout==TimestampParser.YMD)
+        return dateFormatters[0];
+      if (layout>0)
+        return dtFormatters[layout];
+    }
     for (DateTimeFormatter f:dtFormatters)
       try {
         LocalDateTime dt=LocalDateTime.parse(dateStr,f);
@@ -49,6 +91,17 @@ public class LogLoader {
     return null;
   }
 
+  /**
+   * Returns the layout of the TimestampParser equivalent to the given date and time formatter,
+   * or -1 if there is no such layout.
+   */
+  public static int getTimestampLayout(DateTimeFormatter f) {
+    for (int i=1; i<dtFormatters.length && i<TimestampParser.N_LAYOUTS; i++)
+      if (f==dtFormatters[i])
+        return i;
+    return -1;
+  }
+
   // Regex pattern: matches "assigns <id> as <role>,"
   private static final Pattern ASSIGN_PATTERN = Pattern.compile(
       "\\bassigns\\s+([a-fA-F0-9]+)\\s+as\\s+(external|secondary|primary),"
@@ -158,19 +211,29 @@ public class LogLoader {
     }
   }
 
+  /**
+   * Returns the file with the role priorities, which is expected in the same directory
+   * as the given file, or null if the directory cannot be determined.
+   */
+  public static File getRolesFile(String filePath) {
+    if (filePath==null)
+      return null;
+    File parentDir = new File(filePath).getParentFile();
+    if (parentDir == null)
+      return null;
+    return new File(parentDir, "roles.txt");
+  }
+
   public static List<String> readRolesIfExists(String logFilePath) {
     if (logFilePath==null)
       return null;
-    File logFile = new File(logFilePath);
-    File parentDir = logFile.getParentFile();
+    File rolesFile = getRolesFile(logFilePath);
 
-    if (parentDir == null) {
+    if (rolesFile == null) {
       System.err.println("Unable to determine parent directory of log file.");
       return null;
     }
 
-    File rolesFile = new File(parentDir, "roles.txt");
-
     if (rolesFile.exists() && rolesFile.isFile()) {
       List<String> roles = new ArrayList<>();
       try (BufferedReader reader = new BufferedReader(new FileReader(rolesFile))) {
@@ -218,364 +281,662 @@ public class LogLoader {
   }
 
   public boolean loadLog(String logFilePath) {
-    int nTaskInstances=0;
+    resetLogState();
 
     String line=null;
 
-    try (BufferedReader br = new BufferedReader(new FileReader(logFilePath))) {
-      String fieldNames[]=null;
-      int processIdCN=-1, dateCN=-1, actionIdCN=-1, actionTypeCN=-1, actorIdCN=-1, actorRoleCN=-1,
-          targetTypeCN=-1, targetIdCN=-1, outcomeCN=-1, statusCN=-1, paramCN=-1;
-      DateTimeFormatter dateTimeFormatter=null;
+    // only the bytes present at the start are read; the rest may be appended later (see appendLogLines)
+    File file=new File(logFilePath);
+    long size=0;
+    try {
+      size=(holdIncompleteLastLine)?getCompleteLength(file):file.length();
+    } catch (IOException ex) {
+      System.out.println(ex);
+      return false;
+    }
+    try (BufferedReader br = new BufferedReader(new InputStreamReader(
+        new LimitedInputStream(new FileInputStream(file),size)))) {
+      while ((line = br.readLine()) != null)
+        if (!processLogLine(line))
+          return false;
+    } catch (IOException ex) {
+      System.out.println(ex);
+      System.out.println(line);
+      return false;
+    }
+    logLength=size;
+    return finishLogLoading();
+  }
 
-      while ((line = br.readLine()) != null) {
-        String[] fields = line.split(",", -1);
-        if (fields==null || fields.length < 3) continue;
-        if (fieldNames==null) {
-          fieldNames=fields;
-          for (int i=0; i<fieldNames.length; i++) {
-            fieldNames[i] = fieldNames[i].toLowerCase();
-            String s=fieldNames[i];
-            if (s.contains("process") || s.contains("submission"))
-              if (processIdCN<0) processIdCN=i; else;
-            else
-            if (s.contains("date") || s.contains("time"))
-              if (dateCN<0) dateCN=i; else;
-            else
-            if (s.contains("param"))
-              if (paramCN<0) paramCN=i; else;
-            else
-            if (s.contains("action") || s.contains("event")) {
-              if (!s.contains("id"))
-                if (actionTypeCN<0) actionTypeCN=i;
-                else ;
-              else
-                if (actionIdCN<0) actionIdCN=i;
-                else ;
-            }
-            else
-            if (s.contains("actor") || s.contains("person") || s.contains("anonymous") ||
-                s.contains("initiator") || s.contains("initiating")) {
-              if (s.contains("id"))
-                if (actorIdCN<0) actorIdCN=i; else;
-              else
-              if (s.contains("role") || s.contains("type"))
-                if (actorRoleCN<0) actorRoleCN=i; else;
-              else
-                if (actorIdCN<0) actorIdCN=i; else;
-            }
-            else
-            if (s.contains("target") || s.contains("subject")) {
-              if (s.contains("type") || s.contains("role"))
-                if (targetTypeCN<0) targetTypeCN=i; else;
-              else
-                if (targetIdCN<0) targetIdCN=i; else;
-            }
-            else
-            if (s.contains("status"))
-              if (statusCN<0) statusCN=i; else;
-            else
-            if (s.contains("outcome"))
-              if (outcomeCN<0) outcomeCN=i; else;
-         }
-          if (processIdCN<0) {
-            System.out.println("No field with the process identifiers detected!");
-            return false;
-          }
-          if (actionTypeCN<0) {
-            System.out.println("No field with the action/event types detected!");
-            return false;
-          }
-          if (dateCN<0) {
-            System.out.println("No field with the dates/times detected!");
+  /**
+   * Input stream that ends after the given number of bytes.
+   */
+  private static class LimitedInputStream extends FilterInputStream {
+    private long remaining;
+
+    LimitedInputStream(InputStream in, long limit) {
+      super(in);
+      remaining=limit;
+    }
+
+    public int read() throws IOException {
+      if (remaining<=0)
+        return -1;
+      int b=super.read();
+      if (b>=0)
+        --remaining;
+      return b;
+    }
+
+    public int read(byte b[], int off, int len) throws IOException {
+      if (remaining<=0)
+        return -1;
+      int n=super.read(b,off,(int)Math.min(len,remaining));
+      if (n>0)
+        remaining-=n;
+      return n;
+    }
+  }
+
+  /**
+   * Loads the log in the same way as loadLog, but the file is memory-mapped and split
+   * into line-aligned chunks, which are parsed in parallel by nThreads threads.
+   * The parsed records are applied to the processes, threads and actors in the order
+   * of the chunks, so the resulting model is the same as after the sequential loading.
+   */
+  public boolean loadLogParallel(String logFilePath, int nThreads) {
+    if (nThreads<2)
+      return loadLog(logFilePath);
+    resetLogState();
+
+    Charset charset=Charset.defaultCharset();
+    ExecutorService pool=Executors.newFixedThreadPool(nThreads);
+    long size=0;
+    try (FileChannel channel=FileChannel.open(Paths.get(logFilePath), StandardOpenOption.READ)) {
+      size=(holdIncompleteLastLine)?getCompleteLength(channel):channel.size();
+      int nChunks=(int)Math.max(nThreads*4L, size/MAX_CHUNK_SIZE+1);
+      long bounds[]=getChunkBounds(channel,size,nChunks);
+
+      int cIdx=0;
+      // The header and the date format are determined sequentially from the first lines
+      for (; cIdx<nChunks && (fieldNames==null || dateTimeFormatter==null); cIdx++)
+        for (String line:getLines(mapChunk(channel,bounds[cIdx],bounds[cIdx+1],charset)))
+          if (!processLogLine(line))
             return false;
-          }
-          continue;
+
+      // The remaining chunks are parsed in parallel; a limited number of parsed chunks
+      // is kept waiting to be applied, which bounds the memory used by the records.
+      ArrayDeque<Future<List<LogRecord>>> pending=new ArrayDeque<>();
+      while (cIdx<nChunks || !pending.isEmpty()) {
+        while (cIdx<nChunks && pending.size()<2*nThreads) {
+          long from=bounds[cIdx], to=bounds[cIdx+1];
+          pending.add(pool.submit(() -> parseChunk(channel,from,to,charset)));
+          ++cIdx;
         }
+        for (LogRecord r:pending.poll().get())
+          applyLogRecord(r);
+      }
+    } catch (IOException | InterruptedException | ExecutionException ex) {
+      System.out.println("Exception in parallel loading of the log: \n"+ex);
+      return false;
+    } finally {
+      pool.shutdownNow();
+    }
+    logLength=size;
+    return finishLogLoading();
+  }
 
-        String processId = fields[processIdCN].trim();
-        if (dateTimeFormatter==null) {
-          dateTimeFormatter=getSuitableFormatter(fields[dateCN].trim());
-          if (dateTimeFormatter==null) {
-            System.out.println("Unrecognized date format: "+fields[dateCN]);
-            return false;
+  /**
+   * Returns the length of the file up to the end of its last complete line; an incomplete last line
+   * is read when the rest of it has been written, in the same way as in LogTailer.
+   */
+  static long getCompleteLength(File file) throws IOException {
+    try (FileChannel channel=FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return getCompleteLength(channel);
+    }
+  }
+
+  static long getCompleteLength(FileChannel channel) throws IOException {
+    long end=channel.size();
+    ByteBuffer buf=ByteBuffer.allocate(4096);
+    while (end>0) {
+      long from=Math.max(0,end-buf.capacity());
+      buf.clear();
+      buf.limit((int)(end-from));
+      while (buf.hasRemaining() && channel.read(buf,from+buf.position())>0);
+      for (int k=buf.position()-1; k>=0; k--)
+        if (buf.get(k)=='\n')
+          return from+k+1;
+      end=from;
+    }
+    return 0;
+  }
+
+  private void resetLogState() {
+    fieldNames=null;
+    symbols=new SymbolTable();
+    processIdCN=-1; dateCN=-1; actionIdCN=-1; actionTypeCN=-1; actorIdCN=-1; actorRoleCN=-1;
+    targetTypeCN=-1; targetIdCN=-1; outcomeCN=-1; statusCN=-1; paramCN=-1;
+    dateTimeFormatter=null;
+    timeLayout=-1;
+    nTaskInstances=0;
+    logLength=0;
+  }
+
+  /**
+   * Finds the chunk boundaries: the file is divided into nChunks parts of about equal size,
+   * and each boundary is moved to the beginning of the next line.
+   */
+  private static long[] getChunkBounds(FileChannel channel, long size, int nChunks) throws IOException {
+    long bounds[]=new long[nChunks+1];
+    bounds[nChunks]=size;
+    ByteBuffer buf=ByteBuffer.allocate(4096);
+    for (int i=1; i<nChunks; i++) {
+      long pos=Math.max(bounds[i-1],size*i/nChunks);
+      boolean found=false;
+      while (!found && pos<size) {
+        buf.clear();
+        int n=channel.read(buf,pos);
+        if (n<=0)
+          break;
+        for (int k=0; k<n && !found; k++)
+          if (buf.get(k)=='\n') {
+            pos+=k+1;
+            found=true;
           }
-        }
+        if (!found)
+          pos+=n;
+      }
+      bounds[i]=Math.min(pos,size);
+    }
+    return bounds;
+  }
 
-        String timeStr=fields[dateCN].trim();
-        if (timeStr.contains("T"))
-          timeStr=timeStr.replace('T',' ');
-        LocalDateTime timestamp = null;
-        try {
-          timestamp=LocalDateTime.parse(timeStr, dateTimeFormatter);
-        } catch (Exception ex) {}
-        if (timestamp==null)
-          continue;
-        String actorId = (actorIdCN>=0)?fields[actorIdCN].trim():"none";
-        String action = fields[actionTypeCN].trim();
-        String param=(paramCN>=0 && paramCN<fields.length)?fields[paramCN].trim():"";
-        if (param.trim().length()<1)
-          param=null;
-  
-        ActionType aType=actionTypes.get(action);
-        if (aType==null) {
-          aType=new ActionType();
-          aType.typeName=action;
-          actionTypes.put(action,aType);
-        }
-        String actorRole=aType.actorRole;
-        if (actorRoleCN>=0 && actorRoleCN<fields.length) {
-          actorRole=fields[actorRoleCN].trim();
-          if (actorRole.length()<=0)
-            actorRole=null;
-          else
-            if (aType.actorRole==null || aType.actorRole.equalsIgnoreCase("any") ||
-                aType.actorRole.equalsIgnoreCase("none"))
-              aType.actorRole=actorRole;
-        }
-        if (actorRole==null) {
-          System.out.println("NULL role of actor "+actorId+" in action "+action);
-        }
+  private static CharBuffer mapChunk(FileChannel channel, long from, long to, Charset charset)
+      throws IOException {
+    return charset.decode(channel.map(FileChannel.MapMode.READ_ONLY, from, to-from));
+  }
+
+  /**
+   * Splits the text into lines in the same way as BufferedReader.readLine does.
+   */
+  static List<String> getLines(CharBuffer text) {
+    List<String> lines=new ArrayList<>();
+    int len=text.length(), start=0;
+    while (start<len) {
+      int end=start;
+      while (end<len && text.charAt(end)!='\n' && text.charAt(end)!='\r')
+        ++end;
+      lines.add(text.subSequence(start,end).toString());
+      start=end+1;
+      if (end+1<len && text.charAt(end)=='\r' && text.charAt(end+1)=='\n')
+        ++start;
+    }
+    return lines;
+  }
+
+  /**
+   * Parses the lines of one chunk of the log into records; called from the worker threads,
+   * each with its own tokenizer.
+   * The header must already be known.
+   */
+  private List<LogRecord> parseChunk(FileChannel channel, long from, long to, Charset charset)
+      throws IOException {
+    CharBuffer text=mapChunk(channel,from,to,charset);
+    CsvTokenizer tok=new CsvTokenizer();
+    List<LogRecord> records=new ArrayList<>();
+    // the lines are tokenized directly in the buffer, as divided by getLines
+    int len=text.length(), start=0;
+    while (start<len) {
+      int end=start;
+      while (end<len && text.charAt(end)!='\n' && text.charAt(end)!='\r')
+        ++end;
+      if (tok.tokenize(text,start,end)>=3) {
+        LogRecord r=parseLogRecord(tok);
+        if (r!=null)
+          records.add(r);
+      }
+      start=end+1;
+      if (end+1<len && text.charAt(end)=='\r' && text.charAt(end+1)=='\n')
+        ++start;
+    }
+    return records;
+  }
+
+  /**
+   * Processes one line of the log: the first line with at least 3 fields is treated as the header;
+   * the following lines are parsed and applied to the model.
+   * Returns false if the loading must be stopped.
+   */
+  private boolean processLogLine(String line) {
+    if (tokenizer.tokenize(line) < 3)
+      return true;
+    if (fieldNames==null)
+      return parseHeader(tokenizer.getFields());
+    if (!detectDateFormat(tokenizer))
+      return false;
+    LogRecord r=parseLogRecord(tokenizer);
+    if (r!=null)
+      applyLogRecord(r);
+    return true;
+  }
+
+  /**
+   * Determines the format of the dates from the first record after the header.
+   * Returns false if the format is not recognized.
+   */
+  private boolean detectDateFormat(CsvTokenizer fields) {
+    if (dateTimeFormatter==null && dateCN<fields.getFieldCount()) {
+      dateTimeFormatter=getSuitableFormatter(fields.getTrimmedField(dateCN));
+      if (dateTimeFormatter==null) {
+        System.out.println("Unrecognized date format: "+fields.getField(dateCN));
+        return false;
+      }
+      timeLayout=getTimestampLayout(dateTimeFormatter);
+    }
+    return true;
+  }
+
+  private boolean parseHeader(String fields[]) {
+    fieldNames=fields;
+    for (int i=0; i<fieldNames.length; i++) {
+      fieldNames[i] = fieldNames[i].toLowerCase();
+      String s=fieldNames[i];
+      if (s.contains("process") || s.contains("submission"))
+        if (processIdCN<0) processIdCN=i; else;
+      else
+      if (s.contains("date") || s.contains("time"))
+        if (dateCN<0) dateCN=i; else;
+      else
+      if (s.contains("param"))
+        if (paramCN<0) paramCN=i; else;
+      else
+      if (s.contains("action") || s.contains("event")) {
+        if (!s.contains("id"))
+          if (actionTypeCN<0) actionTypeCN=i;
+          else ;
+        else
+          if (actionIdCN<0) actionIdCN=i;
+          else ;
+      }
+      else
+      if (s.contains("actor") || s.contains("person") || s.contains("anonymous") ||
+          s.contains("initiator") || s.contains("initiating")) {
+        if (s.contains("id"))
+          if (actorIdCN<0) actorIdCN=i; else;
+        else
+        if (s.contains("role") || s.contains("type"))
+          if (actorRoleCN<0) actorRoleCN=i; else;
         else
-          if (!actorRole.equalsIgnoreCase("any") &&
-              !actorRoles.contains(actorRole))
-            actorRoles.add(actorRole);
-
-        ProcessInstance process = processes.computeIfAbsent(processId, ProcessInstance::new);
-        process.type="SUBMISSION";
-        Actor performer = actors.get(actorId);
-        if (performer==null) {
-          performer=new Actor(actorId);
-          performer.start=performer.end=timestamp;
-          actors.put(actorId,performer);
+          if (actorIdCN<0) actorIdCN=i; else;
+      }
+      else
+      if (s.contains("target") || s.contains("subject")) {
+        if (s.contains("type") || s.contains("role"))
+          if (targetTypeCN<0) targetTypeCN=i; else;
+        else
+          if (targetIdCN<0) targetIdCN=i; else;
+      }
+      else
+      if (s.contains("status"))
+        if (statusCN<0) statusCN=i; else;
+      else
+      if (s.contains("outcome"))
+        if (outcomeCN<0) outcomeCN=i; else;
+    }
+    if (processIdCN<0) {
+      System.out.println("No field with the process identifiers detected!");
+      return false;
+    }
+    if (actionTypeCN<0) {
+      System.out.println("No field with the action/event types detected!");
+      return false;
+    }
+    if (dateCN<0) {
+      System.out.println("No field with the dates/times detected!");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Extracts the values of the relevant fields of a log line.
+   * Returns null if the line must be skipped.
+   * Does not modify the state of the loader and can be called from several threads.
+   */
+  private LogRecord parseLogRecord(CsvTokenizer fields) {
+    int nFields=fields.getFieldCount();
+    if (processIdCN>=nFields || dateCN>=nFields || actionTypeCN>=nFields || actorIdCN>=nFields)
+      return null;
+    LocalDateTime timestamp = null;
+    long sec=(fields.isEscaped(dateCN))?TimestampParser.INVALID:
+        TimestampParser.parseEpochSecond(fields.getLine(),fields.getStart(dateCN),fields.getEnd(dateCN),timeLayout);
+    if (sec!=TimestampParser.INVALID)
+      timestamp=LocalDateTime.ofEpochSecond(sec,0,ZoneOffset.UTC);
+    else {
+      // unusual values are left to the formatter
+      String timeStr=fields.getTrimmedField(dateCN);
+      if (timeStr.contains("T"))
+        timeStr=timeStr.replace('T',' ');
+      try {
+        timestamp=LocalDateTime.parse(timeStr, dateTimeFormatter);
+      } catch (Exception ex) {}
+    }
+    if (timestamp==null)
+      return null;
+
+    LogRecord r=new LogRecord();
+    r.processId = fields.getTrimmedField(processIdCN);
+    r.timestamp = timestamp;
+    r.actorId = (actorIdCN>=0)?fields.getTrimmedField(actorIdCN):"none";
+    r.action = fields.getTrimmedField(actionTypeCN);
+    String param=(paramCN>=0 && paramCN<nFields)?fields.getTrimmedField(paramCN):"";
+    r.param=(param.length()<1)?null:param;
+    if (actionIdCN>=0 && actionIdCN<nFields)
+      r.actionId=fields.getTrimmedField(actionIdCN);
+    if (actorRoleCN>=0 && actorRoleCN<nFields)
+      r.actorRole=fields.getTrimmedField(actorRoleCN);
+    if (targetTypeCN>=0 && targetIdCN>=0 && targetTypeCN<nFields && targetIdCN<nFields) {
+      r.targetType=fields.getTrimmedField(targetTypeCN);
+      r.targetId=fields.getTrimmedField(targetIdCN);
+    }
+    if (statusCN>=0 && statusCN<nFields)
+      r.status=fields.getTrimmedField(statusCN);
+    if (outcomeCN>=0 && outcomeCN<nFields)
+      r.outcome=fields.getTrimmedField(outcomeCN);
+    return r;
+  }
+
+  /**
+   * Applies one log record to the processes, threads and actors.
+   * The records must be applied in the order of the log.
+   */
+  private void applyLogRecord(LogRecord r) {
+    String processId = r.processId;
+    LocalDateTime timestamp = r.timestamp;
+    String actorId = symbols.intern(SymbolTable.ACTOR,r.actorId);
+    String action = symbols.intern(SymbolTable.ACTION,r.action);
+    String param = r.param;
+
+    ActionType aType=actionTypes.get(action);
+    if (aType==null) {
+      aType=new ActionType();
+      aType.typeName=action;
+      actionTypes.put(action,aType);
+    }
+    String actorRole=aType.actorRole;
+    if (r.actorRole!=null) {
+      actorRole=symbols.intern(SymbolTable.ROLE,r.actorRole);
+      if (actorRole.length()<=0)
+        actorRole=null;
+      else
+        if (aType.actorRole==null || aType.actorRole.equalsIgnoreCase("any") ||
+            aType.actorRole.equalsIgnoreCase("none"))
+          aType.actorRole=actorRole;
+    }
+    if (actorRole==null) {
+      System.out.println("NULL role of actor "+actorId+" in action "+action);
+    }
+    else
+      if (!actorRole.equalsIgnoreCase("any") &&
+          !actorRoles.contains(actorRole))
+        actorRoles.add(actorRole);
+
+    ProcessInstance process = processes.computeIfAbsent(processId, ProcessInstance::new);
+    process.type="SUBMISSION";
+    if (changedProcesses!=null)
+      changedProcesses.add(process);
+    Actor performer = actors.get(actorId);
+    if (performer==null) {
+      performer=new Actor(actorId);
+      performer.start=performer.end=timestamp;
+      actors.put(actorId,performer);
+    }
+    else {
+      if (timestamp.isBefore(performer.start))
+        performer.start=timestamp;
+      if (timestamp.isAfter(performer.end))
+        performer.end=timestamp;
+    }
+    if (actorRole!=null && !actorRole.equals(performer.generalRole))
+      if (performer.generalRole==null) {
+        //if (actorRole.equals("Paper Chair"))
+          //System.out.println(line);
+        performer.generalRole = actorRole;
+      }
+      else
+        if (Actor.rolePriorities!=null && Actor.rolePriorities.contains(actorRole) &&
+            (!Actor.rolePriorities.contains(performer.generalRole) ||
+                Actor.rolePriorities.indexOf(performer.generalRole)>Actor.rolePriorities.indexOf(actorRole))) {
+          //if (actorRole.equals("Paper Chair"))
+            //System.out.println(line);
+          performer.generalRole = actorRole;
         }
-        else {
-          if (timestamp.isBefore(performer.start))
-            performer.start=timestamp;
-          if (timestamp.isAfter(performer.end))
-            performer.end=timestamp;
+    if (process.roleAssignments.get(performer.id)==null)
+      process.assignRole(performer.id,(actorRole!=null)?actorRole:performer.generalRole,timestamp);
+
+    if (changedActors!=null)
+      changedActors.add(performer);
+    ProcessThread thread=process.getOrCreateThread(performer,null);
+
+    // Add this action as a TaskInstance (minimal form)
+    TaskInstance task = new TaskInstance();
+    ++nTaskInstances;
+    task.id=(r.actionId!=null)?r.actionId:String.format("task%04d",nTaskInstances);
+    task.actionType = action;
+    task.actorsInvolved = new ArrayList<Actor>(1);
+    task.actorsInvolved.add(performer);
+    task.actual = new TimeInterval(timestamp, timestamp);
+
+    thread.addTask(task);
+
+    String targetActorId=null, targetActorRole=null, tId2=null;
+    boolean toAddNewThread=false;
+
+    if (aType.is(ActionType.ASSIGNMENT)){
+      String roleInProcess=null;
+      if (param!=null && !param.isEmpty()) {
+        if (aType.is(ActionType.ASSIGNMENT_AS_ROLE)) {
+          roleInProcess=aType.getAssignedRole();
+          targetActorId=param;
+          process.assignRole(targetActorId,roleInProcess,timestamp);
         }
-        if (actorRole!=null && !actorRole.equals(performer.generalRole))
-          if (performer.generalRole==null) {
-            //if (actorRole.equals("Paper Chair"))
-              //System.out.println(line);
-            performer.generalRole = actorRole;
-          }
-          else
-            if (Actor.rolePriorities!=null && Actor.rolePriorities.contains(actorRole) &&
-                (!Actor.rolePriorities.contains(performer.generalRole) ||
-                    Actor.rolePriorities.indexOf(performer.generalRole)>Actor.rolePriorities.indexOf(actorRole))) {
-              //if (actorRole.equals("Paper Chair"))
-                //System.out.println(line);
-              performer.generalRole = actorRole;
-            }
-        if (process.roleAssignments.get(performer.id)==null)
-          process.roleAssignments.put(performer.id,(actorRole!=null)?actorRole:performer.generalRole);
-
-        ProcessThread thread=process.getOrCreateThread(performer,null);
-
-        // Add this action as a TaskInstance (minimal form)
-        TaskInstance task = new TaskInstance();
-        task.id=(actionIdCN>=0)?fields[actionIdCN].trim():String.format("task%04d",++nTaskInstances);
-        task.actionType = action;
-        task.actorsInvolved = new ArrayList<Actor>(1);
-        task.actorsInvolved.add(performer);
-        task.actual = new TimeInterval(timestamp, timestamp);
-
-        thread.addTask(task);
-
-        String targetActorId=null, targetActorRole=null, tId2=null;
-        boolean toAddNewThread=false;
-
-        if (action.toLowerCase().contains("assign")){
-          String roleInProcess=null;
-          if (param!=null && !param.isEmpty()) {
-            if (action.toLowerCase().contains(" as ")) {
-              int idx=action.toLowerCase().indexOf(" as ");
-              roleInProcess=action.substring(idx+4).trim();
-              targetActorId=param;
-              process.roleAssignments.put(targetActorId,roleInProcess);
+        else
+          if (param.contains("(") && param.contains(")")) {
+            int p1 = param.indexOf('(');
+            int p2 = param.indexOf(')');
+            if (p1 > 0 && p2 > p1) {
+              targetActorId = param.substring(0, p1).trim();
+              roleInProcess = param.substring(p1 + 1, p2).trim();
+              process.assignRole(targetActorId,roleInProcess,timestamp);
             }
-            else
-              if (param.contains("(") && param.contains(")")) {
-                int p1 = param.indexOf('(');
-                int p2 = param.indexOf(')');
-                if (p1 > 0 && p2 > p1) {
-                  targetActorId = param.substring(0, p1).trim();
-                  roleInProcess = param.substring(p1 + 1, p2).trim();
-                  process.roleAssignments.put(targetActorId,roleInProcess);
-                }
-                if (p2+1<param.length()) {
-                  String sub=param.substring(p2+1).trim();
-                  if (sub.startsWith(";"))
-                    sub=sub.substring(1).trim();
-                  while ((p1 = sub.indexOf('('))>=0 && (p2 = sub.indexOf(')')) > p1) {
-                    String aId=sub.substring(0,p1).trim(), aRole=sub.substring(p1+1,p2).trim();
-                    process.roleAssignments.put(aId,aRole);
-                    tId2=aId;
-                    if (p2+1>=sub.length())
-                      break;
-                    sub=sub.substring(p2+1).trim();
-                    if (sub.startsWith(";"))
-                      sub=sub.substring(1).trim();
-                  }
-                }
+            if (p2+1<param.length()) {
+              String sub=param.substring(p2+1).trim();
+              if (sub.startsWith(";"))
+                sub=sub.substring(1).trim();
+              while ((p1 = sub.indexOf('('))>=0 && (p2 = sub.indexOf(')')) > p1) {
+                String aId=sub.substring(0,p1).trim(), aRole=sub.substring(p1+1,p2).trim();
+                process.assignRole(aId,aRole,timestamp);
+                tId2=aId;
+                if (p2+1>=sub.length())
+                  break;
+                sub=sub.substring(p2+1).trim();
+                if (sub.startsWith(";"))
+                  sub=sub.substring(1).trim();
               }
-            toAddNewThread= targetActorId!=null && roleInProcess!=null;
-          }
-          else
-            if (action.toLowerCase().contains("clear all")) {
-              process.roleAssignments.clear();
             }
+          }
+        toAddNewThread= targetActorId!=null && roleInProcess!=null;
+      }
+      else
+        if (aType.is(ActionType.CLEAR_ALL)) {
+          process.clearRoles(timestamp);
         }
-        else
-        if (action.toLowerCase().contains("changes role")) {
-          task.outcome=param;
-          if (param!=null && !param.isEmpty() && param.contains(" to ") && !process.roleAssignments.isEmpty()) {
-            int p=param.indexOf(" to ");
-            String role1=param.substring(0,p).trim(), role2=param.substring(p+4).trim();
-            if (GlobalProcess.isPCMemberRole(role1) && GlobalProcess.isPCMemberRole(role2)) {
-              //role exchange between primary and secondary
-              //check if the previous task was also role exchange
-              boolean doExchange=true;
-              if (thread.tasks.size()>1) {
-                TaskInstance prevTask=thread.tasks.get(thread.tasks.size()-2);
-                if (prevTask.actionType.toLowerCase().contains("changes role") && prevTask.outcome!=null &&
-                    prevTask.outcome.contains(" to ")) {
-                  p=prevTask.outcome.indexOf(" to ");
-                  String prevRole1=prevTask.outcome.substring(0,p).trim(),
-                      prevRole2=prevTask.outcome.substring(p+4).trim();
-                  doExchange=!(prevRole1.equals(role2) && prevRole2.equals(role1)); //ignore the second exchange
-                }
-              }
-              if (doExchange) {
-                String aId1=null, aId2=null;
-                for (Map.Entry<String,String> e:process.roleAssignments.entrySet())
-                  if (e.getValue().equals(role1))
-                    aId1=e.getKey();
-                  else
-                  if (e.getValue().equals(role2))
-                    aId2=e.getKey();
-                if (aId1!=null && aId2!=null) {
-                  process.roleAssignments.put(aId1,role2);
-                  process.roleAssignments.put(aId2,role1);
-                }
-              }
+    }
+    else
+    if (aType.is(ActionType.ROLE_CHANGE)) {
+      task.outcome=param;
+      if (param!=null && !param.isEmpty() && param.contains(" to ") && !process.roleAssignments.isEmpty()) {
+        int p=param.indexOf(" to ");
+        String role1=param.substring(0,p).trim(), role2=param.substring(p+4).trim();
+        if (GlobalProcess.isPCMemberRole(role1) && GlobalProcess.isPCMemberRole(role2)) {
+          //role exchange between primary and secondary
+          //check if the previous task was also role exchange
+          boolean doExchange=true;
+          if (thread.tasks.size()>1) {
+            TaskInstance prevTask=thread.tasks.get(thread.tasks.size()-2);
+            ActionType prevType=actionTypes.get(prevTask.actionType);
+            if (prevType!=null && prevType.is(ActionType.ROLE_CHANGE) && prevTask.outcome!=null &&
+                prevTask.outcome.contains(" to ")) {
+              p=prevTask.outcome.indexOf(" to ");
+              String prevRole1=prevTask.outcome.substring(0,p).trim(),
+                  prevRole2=prevTask.outcome.substring(p+4).trim();
+              doExchange=!(prevRole1.equals(role2) && prevRole2.equals(role1)); //ignore the second exchange
             }
-            else {
-              ProcessThread roleThread = null;
-              for (ProcessThread th : process.threads.values()) {
-                String tRole = process.roleAssignments.get(th.actor.id);
-                if (tRole != null && tRole.equals(role1))
-                  if (roleThread == null || roleThread.tasks.isEmpty())
-                    roleThread = th;
-                  else
-                  if (th.tasks.isEmpty() || roleThread.getLifetime().start.isBefore(th.getLifetime().start))
-                    roleThread = th;
-              }
-              if (roleThread != null) {
-                process.roleAssignments.put(roleThread.actor.id, role2);
-              }
+          }
+          if (doExchange) {
+            String aId1=null, aId2=null;
+            for (Map.Entry<String,String> e:process.roleAssignments.entrySet())
+              if (e.getValue().equals(role1))
+                aId1=e.getKey();
+              else
+              if (e.getValue().equals(role2))
+                aId2=e.getKey();
+            if (aId1!=null && aId2!=null) {
+              process.assignRole(aId1,role2,timestamp);
+              process.assignRole(aId2,role1,timestamp);
             }
           }
         }
-        else
-        if (targetTypeCN>=0 && targetIdCN>=0 && targetTypeCN<fields.length && targetIdCN<fields.length) {
-          String targetType=fields[targetTypeCN].trim();
-          if (targetType.length()>0)
-            if (actorRoles.contains(targetType))
-              targetActorRole=targetType;
-            else
-            if (targetType.toLowerCase().contains("actor") || targetType.toLowerCase().contains("reviewer"))
-              targetActorRole=targetType;
-            if (targetActorRole!=null)
-              targetActorId=fields[targetIdCN].trim();
+        else {
+          ProcessThread roleThread = null;
+          for (ProcessThread th : process.threads.values()) {
+            String tRole = process.roleAssignments.get(th.actor.id);
+            if (tRole != null && tRole.equals(role1))
+              if (roleThread == null || roleThread.tasks.isEmpty())
+                roleThread = th;
+              else
+              if (th.tasks.isEmpty() || roleThread.getLifetime().start.isBefore(th.getLifetime().start))
+                roleThread = th;
+          }
+          if (roleThread != null) {
+            process.assignRole(roleThread.actor.id,role2,timestamp);
+          }
         }
+      }
+    }
+    else
+    if (r.targetType!=null) {
+      String targetType=r.targetType;
+      if (targetType.length()>0)
+        if (actorRoles.contains(targetType))
+          targetActorRole=targetType;
+        else
+        if (targetType.toLowerCase().contains("actor") || targetType.toLowerCase().contains("reviewer"))
+          targetActorRole=targetType;
+        if (targetActorRole!=null)
+          targetActorId=r.targetId;
+    }
 
-        if (statusCN>=0 && statusCN<fields.length) {
-          task.status = fields[statusCN].trim();
-          if (task.status.length()<1)
-            task.status=null;
-        }
+    if (r.status!=null) {
+      task.status = r.status;
+      if (task.status.length()<1)
+        task.status=null;
+    }
 
-        if (outcomeCN>=0 && outcomeCN<fields.length) {
-          task.outcome = fields[outcomeCN].trim();
-          if (task.outcome.length()<1)
-            task.outcome=null;
-        }
+    if (r.outcome!=null) {
+      task.outcome = r.outcome;
+      if (task.outcome.length()<1)
+        task.outcome=null;
+    }
 
-        if (targetActorId==null && param!=null && aType.targetType!=null) {
-          if (aType.targetType.equalsIgnoreCase("actor")) {
-            if (targetActorId == null) targetActorId = param;
-            else ;
-          } else if (aType.targetType.equalsIgnoreCase("status"))
-            task.status = param;
-          else if (aType.targetType.equalsIgnoreCase("outcome"))
-            task.outcome = param;
-        }
+    if (targetActorId==null && param!=null && aType.targetType!=null) {
+      if (aType.targetType.equalsIgnoreCase("actor")) {
+        if (targetActorId == null) targetActorId = param;
+        else ;
+      } else if (aType.targetType.equalsIgnoreCase("status"))
+        task.status = param;
+      else if (aType.targetType.equalsIgnoreCase("outcome"))
+        task.outcome = param;
+    }
+    symbols.encodeTask(task);
 
-        if (targetActorId!=null)
-          for (int t=0; t<2; t++) {
-            Actor targetActor = actors.get(targetActorId);
-            if (targetActor==null) {
-              targetActor=new Actor(targetActorId);
-              targetActor.start=targetActor.end=timestamp;
-              actors.put(targetActorId,targetActor);
-            }
-            else {
-              if (timestamp.isBefore(targetActor.start))
-                targetActor.start=timestamp;
-              if (timestamp.isAfter(targetActor.end))
-                targetActor.end=timestamp;
-            }
-            if (targetActorRole==null) {
-              String role=process.roleAssignments.get(targetActorId);
-              if (role!=null && (role.equalsIgnoreCase("primary") ||
-                  role.equalsIgnoreCase("secondary")))
-                targetActorRole=targetActor.generalRole="PC Member";
-              if (targetActorRole==null)
-                targetActorRole = aType.targetRole;
-            }
-            if (targetActorRole!=null && !targetActorRole.equals(targetActor.generalRole))
-              if (!actorRoles.contains(targetActorRole))
-                actorRoles.add(targetActorRole);
-              if (targetActor.generalRole==null) {
-                //if (targetActorRole.equals("Paper Chair"))
-                  //System.out.println(line);
-                targetActor.generalRole = targetActorRole;
-              }
-              else
-              if (Actor.rolePriorities!=null && Actor.rolePriorities.contains(targetActorRole) &&
-                  (!Actor.rolePriorities.contains(targetActor.generalRole) ||
-                      Actor.rolePriorities.indexOf(targetActor.generalRole)>Actor.rolePriorities.indexOf(targetActorRole))) {
-                //if (targetActorRole.equals("Paper Chair"))
-                  //System.out.println(line);
-                targetActor.generalRole = targetActorRole;
-              }
-            task.actorsInvolved.add(targetActor);
-            if (toAddNewThread)
-              process.getOrCreateThread(targetActor,null);
-            if (tId2==null)
-              break;
-            if (t==0) {
-              targetActorId=tId2;
-              targetActorRole=null;
-            }
+    if (targetActorId!=null)
+      for (int t=0; t<2; t++) {
+        targetActorId=symbols.intern(SymbolTable.ACTOR,targetActorId);
+        Actor targetActor = actors.get(targetActorId);
+        if (targetActor==null) {
+          targetActor=new Actor(targetActorId);
+          targetActor.start=targetActor.end=timestamp;
+          actors.put(targetActorId,targetActor);
+        }
+        else {
+          if (timestamp.isBefore(targetActor.start))
+            targetActor.start=timestamp;
+          if (timestamp.isAfter(targetActor.end))
+            targetActor.end=timestamp;
+        }
+        if (targetActorRole==null) {
+          String role=process.roleAssignments.get(targetActorId);
+          if (role!=null && (role.equalsIgnoreCase("primary") ||
+              role.equalsIgnoreCase("secondary")))
+            targetActorRole=targetActor.generalRole="PC Member";
+          if (targetActorRole==null)
+            targetActorRole = aType.targetRole;
+        }
+        if (targetActorRole!=null && !targetActorRole.equals(targetActor.generalRole))
+          if (!actorRoles.contains(targetActorRole))
+            actorRoles.add(targetActorRole);
+          if (targetActor.generalRole==null) {
+            //if (targetActorRole.equals("Paper Chair"))
+              //System.out.println(line);
+            targetActor.generalRole = targetActorRole;
           }
-            
+          else
+          if (Actor.rolePriorities!=null && Actor.rolePriorities.contains(targetActorRole) &&
+              (!Actor.rolePriorities.contains(targetActor.generalRole) ||
+                  Actor.rolePriorities.indexOf(targetActor.generalRole)>Actor.rolePriorities.indexOf(targetActorRole))) {
+            //if (targetActorRole.equals("Paper Chair"))
+              //System.out.println(line);
+            targetActor.generalRole = targetActorRole;
+          }
+        task.actorsInvolved.add(targetActor);
+        if (changedActors!=null)
+          changedActors.add(targetActor);
+        if (toAddNewThread)
+          process.getOrCreateThread(targetActor,null);
+        if (tId2==null)
+          break;
+        if (t==0) {
+          targetActorId=tId2;
+          targetActorRole=null;
+        }
       }
-    } catch (IOException ex) {
-      System.out.println(ex);
-      System.out.println(line);
-      return false;
-    }
+  }
+
+  /**
+   * Finalizes the processes and actors after all log records have been applied.
+   */
+  private boolean finishLogLoading() {
     if (processes.isEmpty()) {
       System.out.println("Failed to load any process!!!");
       return false;
     }
 
-    // Finalize all processes
-    for (ProcessInstance pi : processes.values()) {
+    finishProcesses(processes.values());
+    finishActors(actors.values(),null);
+    symbols.encodeActionTypes(actionTypes.values());
+    symbols.encodeActors(actors.values());
+    symbols.encodeProcesses(processes.values());
+    return true;
+  }
+
+  /**
+   * Removes the empty threads, sorts the threads, and propagates the role assignments
+   * to the threads and actors.
+   */
+  private void finishProcesses(Collection<ProcessInstance> pList) {
+    for (ProcessInstance pi : pList) {
       pi.cleanAndSortThreads();
       if (!pi.roleAssignments.isEmpty())
         for (Map.Entry<String,String> e:pi.roleAssignments.entrySet()) {
@@ -592,8 +953,14 @@ public class LogLoader {
           }
         }
     }
-    for (Map.Entry<String, Actor> e:actors.entrySet()) {
-      Actor a=e.getValue();
+  }
+
+  /**
+   * Adjusts the general roles of the actors according to their roles in the processes.
+   * The processes where the roles are changed are added to the set 'changed', if it is not null.
+   */
+  private void finishActors(Collection<Actor> aList, Set<ProcessInstance> changed) {
+    for (Actor a:aList) {
       if ((a.generalRole==null ||
           (!a.generalRole.equalsIgnoreCase("Paper Chair") &&
           !a.generalRole.equalsIgnoreCase("PC Member"))) &&
@@ -605,12 +972,98 @@ public class LogLoader {
             r.setValue(a.generalRole);
             ProcessInstance pi=processes.get(r.getKey());
             pi.roleAssignments.put(a.id,a.generalRole);
+            pi.roleHistory.replaceRoles(a.id,a.generalRole);
             ProcessThread th=pi.threads.get(a.id);
             if (th!=null)
               th.role=a.generalRole;
+            if (changed!=null)
+              changed.add(pi);
           }
     }
-    return true;
+  }
+
+  /**
+   * Makes the loader continue a model that has not been loaded by it, e.g. restored from a snapshot,
+   * so that the records appended to the log can be applied to it by appendLogLines.
+   * The model must correspond to the current content of the log; the header of the log is read
+   * to determine the columns and the format of the dates.
+   */
+  public boolean attach(GlobalProcess gProc, String logFilePath) {
+    if (gProc==null || gProc.processes==null)
+      return false;
+    resetLogState();
+    if (gProc.phases!=null) phases=gProc.phases;
+    if (gProc.actionTypes!=null) actionTypes=gProc.actionTypes;
+    if (gProc.actors!=null) actors=gProc.actors;
+    if (gProc.actorRoles==null)
+      gProc.actorRoles=new ArrayList<>();
+    actorRoles=gProc.actorRoles;
+    processes=new LinkedHashMap<>();
+    for (ProcessInstance pi:gProc.processes) {
+      processes.put(pi.id,pi);
+      for (ProcessThread th:pi.threads.values())
+        nTaskInstances+=th.tasks.size();
+    }
+    gProc.processes=processes.values();
+    symbols=gProc.getSymbols();
+
+    File file=new File(logFilePath);
+    logLength=file.length();
+    try (BufferedReader br = new BufferedReader(new InputStreamReader(
+        new LimitedInputStream(new FileInputStream(file),logLength)))) {
+      String line;
+      while ((fieldNames==null || dateTimeFormatter==null) && (line = br.readLine()) != null) {
+        if (tokenizer.tokenize(line) < 3)
+          continue;
+        if (fieldNames==null) {
+          if (!parseHeader(tokenizer.getFields()))
+            return false;
+        }
+        else
+          if (!detectDateFormat(tokenizer))
+            return false;
+      }
+    } catch (IOException ex) {
+      System.out.println(ex);
+      return false;
+    }
+    return fieldNames!=null;
+  }
+
+  /**
+   * Applies the lines appended to the log after it has been loaded and finalizes
+   * the affected processes and actors in the same way as after the loading.
+   * Returns the processes that have been changed or created.
+   */
+  public Set<ProcessInstance> appendLogLines(List<String> lines) {
+    changedProcesses=new LinkedHashSet<>();
+    changedActors=new LinkedHashSet<>();
+    for (String line:lines)
+      if (!processLogLine(line))
+        break;
+    Set<ProcessInstance> changed=changedProcesses;
+    Set<Actor> actorsToFinish=changedActors;
+    changedProcesses=null;
+    changedActors=null;
+    if (changed.isEmpty())
+      return changed;
+
+    finishProcesses(changed);
+    for (ProcessInstance pi:changed)
+      for (ProcessThread th:pi.threads.values())
+        actorsToFinish.add(th.actor);
+    finishActors(actorsToFinish,changed);
+    symbols.encodeActionTypes(actionTypes.values());
+    symbols.encodeActors(actorsToFinish);
+    symbols.encodeProcesses(changed);
+    return changed;
+  }
+
+  /**
+   * Returns the number of bytes of the log file that have been loaded or appended.
+   */
+  public long getLogLength() {
+    return logLength;
   }
 
 
@@ -634,4 +1087,8 @@ public class LogLoader {
   public Map<String, Actor> getActors() {
     return actors;
   }
+
+  public SymbolTable getSymbols() {
+    return symbols;
+  }
 }
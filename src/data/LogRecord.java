@@ -0,0 +1,23 @@
+package data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Values of the relevant fields of one line of the event log, extracted before
+ * the line is applied to the process model.
+ * The optional fields are null when the respective columns are absent in the log.
+ */
+
+public class LogRecord {
+  public String processId=null;
+  public LocalDateTime timestamp=null;
+  public String actorId=null;
+  public String action=null;
+  public String param=null;
+  public String actionId=null;
+  public String actorRole=null;
+  public String targetType=null;
+  public String targetId=null;
+  public String status=null;
+  public String outcome=null;
+}
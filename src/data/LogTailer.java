@@ -0,0 +1,142 @@
+package data;
+
+import structures.GlobalProcess;
+import structures.PhaseChange;
+import structures.ProcessInstance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the log file after it has been loaded: watches the file for changes, reads the complete lines
+ * appended after the loaded part, and applies them to the model through the loader.
+ * Only the changed processes are evaluated anew by the StatusChecker; then the listeners
+ * of the GlobalProcess are notified, and the listeners of the phase changes get the changed
+ * completeness dates. The model is changed only in the thread of the given executor,
+ * e.g. SwingUtilities::invokeLater, so that the views can read it safely.
+ */
+
+public class LogTailer {
+  // How often (in milliseconds) the file is checked if no change events come
+  public static long POLL_INTERVAL=2000;
+  // Maximal number of bytes read at once
+  public static int MAX_BLOCK_SIZE=16*1024*1024;
+  // Whether each applied portion of the log is reported
+  public static boolean verbose=false;
+
+  private LogLoader loader=null;
+  private GlobalProcess gProc=null;
+  private Path logPath=null;
+  private Executor updateExecutor=null;
+  private PhaseRuleDefinitions ruleDefinitions=null;
+  // Checks the changed processes; made once, so that the rules of the phases are reused
+  private StatusChecker checker=null;
+  // Position in the file after the last complete line that has been read
+  private long offset=0;
+
+  private Thread thread=null;
+  private volatile boolean stopped=false;
+
+  public LogTailer(LogLoader loader, GlobalProcess gProc, String logFilePath, Executor updateExecutor) {
+    this.loader=loader;
+    this.gProc=gProc;
+    this.logPath=Paths.get(logFilePath).toAbsolutePath();
+    this.updateExecutor=updateExecutor;
+    this.offset=loader.getLogLength();
+  }
+
+  /**
+   * Sets the definitions of the phase rules used for checking the changed processes.
+   */
+  public void setRuleDefinitions(PhaseRuleDefinitions ruleDefinitions) {
+    this.ruleDefinitions=ruleDefinitions;
+  }
+
+  public void start() {
+    if (thread!=null)
+      return;
+    stopped=false;
+    thread=new Thread(this::watch,"Log tailer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public void stop() {
+    stopped=true;
+    if (thread!=null)
+      thread.interrupt();
+    thread=null;
+  }
+
+  private void watch() {
+    try (WatchService watcher=FileSystems.getDefault().newWatchService()) {
+      logPath.getParent().register(watcher,
+          StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+      while (!stopped) {
+        WatchKey key=watcher.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        if (key!=null) {
+          // events about other files in the directory only cause a check of the file size
+          key.pollEvents();
+          key.reset();
+        }
+        readAppendedLines();
+      }
+    } catch (IOException ex) {
+      System.out.println("Following the log file failed: "+ex);
+    } catch (InterruptedException ex) {}
+  }
+
+  private void readAppendedLines() throws IOException {
+    try (FileChannel channel=FileChannel.open(logPath, StandardOpenOption.READ)) {
+      long size=channel.size();
+      if (size<offset) {
+        System.out.println("The log file "+logPath+" has been truncated; stopped following it");
+        stopped=true;
+        return;
+      }
+      while (offset<size && !stopped) {
+        ByteBuffer buf=ByteBuffer.allocate((int)Math.min(size-offset,MAX_BLOCK_SIZE));
+        while (buf.hasRemaining() && channel.read(buf,offset+buf.position())>0);
+        // an incomplete last line is left until the rest of it is written
+        int end=buf.position();
+        while (end>0 && buf.get(end-1)!='\n')
+          --end;
+        if (end<=0)
+          return;
+        buf.flip();
+        buf.limit(end);
+        CharBuffer text=Charset.defaultCharset().decode(buf);
+        offset+=end;
+        List<String> lines=LogLoader.getLines(text);
+        if (!lines.isEmpty())
+          updateExecutor.execute(() -> applyLines(lines));
+      }
+    } catch (NoSuchFileException ex) {
+      // the file may be temporarily absent while being replaced
+    }
+  }
+
+  private void applyLines(List<String> lines) {
+    Set<ProcessInstance> changed=loader.appendLogLines(lines);
+    if (changed.isEmpty())
+      return;
+    if (checker==null) {
+      checker=new StatusChecker(gProc);
+      checker.setRuleDefinitions(ruleDefinitions);
+    }
+    List<PhaseChange> phaseChanges=checker.updatePhaseCompletenessDates(changed);
+    if (verbose)
+      System.out.println("Appended "+lines.size()+" lines of the log; "+changed.size()+" processes changed; "+
+          phaseChanges.size()+" phase completeness dates changed");
+    gProc.notifyDataChanged();
+    gProc.notifyPhaseChanges(phaseChanges);
+  }
+}
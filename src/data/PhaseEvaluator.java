@@ -0,0 +1,83 @@
+package data;
+
+import structures.*;
+
+import java.time.LocalDate;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Evaluates the rules of the phases for a process in one pass over its threads and tasks.
+ * The rules are given in the order of the phases; when several rules set the delay flag
+ * of the same task, the rule of the later phase wins, as if the phases were checked one after another.
+ * An instance must be used by one thread.
+ */
+
+public class PhaseEvaluator {
+  private GlobalProcess gProc=null;
+  private PhaseRule rules[]=null;
+  // The rules interested in the current thread
+  private PhaseRule active[]=null;
+  // Which rule (and stage) has last set the delay flag of a task of the current process
+  private Map<TaskInstance,Integer> delayWriters=new IdentityHashMap<>();
+
+  public PhaseEvaluator(GlobalProcess gProc, PhaseRule rules[]) {
+    this.gProc=gProc;
+    this.rules=rules;
+    active=new PhaseRule[rules.length];
+    for (int i=0; i<rules.length; i++)
+      if (rules[i]!=null) {
+        rules[i].evaluator=this;
+        rules[i].order=i;
+      }
+  }
+
+  public PhaseRule[] getRules() {
+    return rules;
+  }
+
+  void setDelayed(TaskInstance task, boolean delayed, int key) {
+    Integer prev=delayWriters.get(task);
+    if (prev!=null && prev>key)
+      return;
+    task.isDelayed=delayed;
+    delayWriters.put(task,key);
+  }
+
+  /**
+   * Returns the completeness dates of the phases (in the order of the rules) for the process;
+   * the elements are null for the phases without rules or without dates.
+   */
+  public LocalDate[] evaluate(ProcessInstance pi) {
+    LocalDate dates[]=new LocalDate[rules.length];
+    if (pi.threads==null || pi.threads.isEmpty())
+      return dates;
+    delayWriters.clear();
+    for (PhaseRule rule:rules)
+      if (rule!=null)
+        rule.begin(pi);
+    for (Map.Entry<String,ProcessThread> e:pi.threads.entrySet()) {
+      ProcessThread th=e.getValue();
+      Actor actor=gProc.actors.get(e.getKey());
+      int actorRoles=(actor==null)?0:gProc.getRoleClasses(actor.generalRoleCode);
+      int nActive=0;
+      for (PhaseRule rule:rules)
+        if (rule!=null && rule.startThread(th,actorRoles))
+          active[nActive++]=rule;
+      if (nActive==0)
+        continue;
+      for (TaskInstance task:th.tasks) {
+        LocalDate day=task.actual.start.toLocalDate();
+        for (int i=0; i<nActive; i++)
+          active[i].visitTask(task,day);
+      }
+      for (int i=0; i<nActive; i++)
+        active[i].endThread();
+    }
+    for (int i=0; i<rules.length; i++)
+      if (rules[i]!=null)
+        dates[i]=rules[i].finish();
+    delayWriters.clear();
+    return dates;
+  }
+}
@@ -0,0 +1,86 @@
+package data;
+
+import structures.*;
+
+import java.time.LocalDate;
+
+/**
+ * Rule determining when a process has completed a phase. The rules of all phases are evaluated
+ * together in one pass over the threads and tasks of a process (see PhaseEvaluator):
+ * for each thread, startThread tells whether the rule needs the tasks of this thread;
+ * these tasks are given to visitTask in their order, then endThread is called.
+ * After all threads, finish returns the completeness date, or null if the rule cannot tell.
+ * A rule keeps the state of the current process, so an instance must be used by one thread.
+ */
+
+public abstract class PhaseRule {
+  public Phase phase=null;
+  protected StatusChecker checker=null;
+  protected GlobalProcess gProc=null;
+  // The process being evaluated
+  protected ProcessInstance process=null;
+  PhaseEvaluator evaluator=null;
+  // Position of the phase in the order of the phases; the rules of later phases override the delay flags
+  int order=0;
+
+  protected PhaseRule(Phase phase, StatusChecker checker) {
+    this.phase=phase;
+    this.checker=checker;
+    this.gProc=checker.getGlobalProcess();
+  }
+
+  /**
+   * Prepares the rule for a new process.
+   */
+  protected void begin(ProcessInstance process) {
+    this.process=process;
+  }
+
+  /**
+   * Returns true if the rule needs the tasks of this thread. 'actorRoles' are the classes
+   * of the general role of the actor of the thread (see GlobalProcess.getRoleClasses).
+   */
+  protected boolean startThread(ProcessThread thread, int actorRoles) {
+    return false;
+  }
+
+  /**
+   * Processes a task of the current thread; 'day' is the day of the start of the task.
+   */
+  protected void visitTask(TaskInstance task, LocalDate day) {}
+
+  protected void endThread() {}
+
+  protected abstract LocalDate finish();
+
+  /**
+   * The date used when the process has not fulfilled the requirements of the phase.
+   */
+  protected LocalDate getLifetimeEnd() {
+    return process.getProcessLifetime().end.toLocalDate();
+  }
+
+  /**
+   * Sets the delay flag of the task. Within a rule, the writes of a later stage override
+   * the writes of an earlier stage, even when done later in time (e.g. in finish).
+   */
+  protected void setDelayed(TaskInstance task, boolean delayed, int stage) {
+    evaluator.setDelayed(task,delayed,order*4+stage);
+  }
+
+  protected boolean isAfterEnd(LocalDate day) {
+    return day.isAfter(phase.endDate);
+  }
+
+  protected boolean is(TaskInstance task, int actionClass) {
+    return checker.isAction(task,actionClass);
+  }
+
+  protected boolean isComplete(TaskInstance task) {
+    return checker.isComplete(task);
+  }
+
+  protected boolean hasRole(ProcessThread thread, int roleClass) {
+    return gProc.hasRoleClass(thread.roleCode,roleClass);
+  }
+}
@@ -0,0 +1,121 @@
+package data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Definitions of the conditions of phase completeness read from a text file, by default
+ * "phase_rules.txt" next to the configuration file (paths.txt). The phases without definitions
+ * are checked by the built-in rules (see PhaseRules). The file consists of blocks like this:
+ *
+ *   # the 4th reviewer who completed a review
+ *   [Reviewing]
+ *   threads = !PAPER_CHAIR
+ *   actions = REVIEW
+ *   complete = true
+ *   perThread = first
+ *   count = 4
+ *   date = latest
+ *
+ * The keys (all optional except "actions"):
+ *   rule      - count (the default), builtin (the built-in rule of the phase), or none (no check);
+ *   threads   - role classes of the threads (PAPER_CHAIR, PRIMARY, SECONDARY, PC_MEMBER, EXTERNAL),
+ *               separated by spaces or commas; "!" excludes a class, the prefix "actor:" refers to
+ *               the general role of the actor instead of the role in the process;
+ *   actions   - action classes of the tasks (names of the classes in ActionType, e.g. REVIEW, DECISION);
+ *   complete  - true if only the tasks with the status "complete" count;
+ *   after, from, before, until - the window of the task start dates as "<phase>.start" or "<phase>.end",
+ *               where the phase is a name or "this"; after and before exclude the day, from and until include it;
+ *   perThread - all (the default) or first (only the first matching task of each thread counts);
+ *   count     - how many matching tasks complete the phase (1 by default);
+ *   date      - nth (the day when the count is reached, the default), earliest, or latest of the matching tasks;
+ *   delayed   - end (the default: the matching tasks after the end of the phase are marked as delayed) or none;
+ *   otherwise - lifetime (the default: the end of the process when the count is not reached) or none.
+ */
+
+public class PhaseRuleDefinitions {
+  public static final String DEFAULT_FILE_NAME="phase_rules.txt";
+
+  /**
+   * The properties given for a phase in the file.
+   */
+  public static class Definition {
+    public String phaseName=null;
+    public Map<String,String> properties=new LinkedHashMap<>();
+    public int lineNumber=0;
+    // Whether an error in the definition has been reported
+    public boolean reported=false;
+
+    public String get(String key) {
+      return properties.get(key.toLowerCase());
+    }
+  }
+
+  public String filePath=null;
+  // The definitions by the lower-case phase names
+  private Map<String,Definition> definitions=new LinkedHashMap<>();
+
+  /**
+   * Returns the default file of the rules in the directory of the configuration file.
+   */
+  public static File getRulesFile(String configFilePath) {
+    if (configFilePath==null)
+      return null;
+    File parentDir=new File(configFilePath).getAbsoluteFile().getParentFile();
+    if (parentDir==null)
+      return null;
+    return new File(parentDir,DEFAULT_FILE_NAME);
+  }
+
+  /**
+   * Reads the definitions from the file; returns null if the file does not exist or cannot be read.
+   */
+  public static PhaseRuleDefinitions load(String filePath) {
+    if (filePath==null || !new File(filePath).isFile())
+      return null;
+    PhaseRuleDefinitions defs=new PhaseRuleDefinitions();
+    defs.filePath=filePath;
+    try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+      String line;
+      int lineNumber=0;
+      Definition def=null;
+      while ((line = br.readLine()) != null) {
+        ++lineNumber;
+        line=line.trim();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+        if (line.startsWith("[") && line.endsWith("]")) {
+          def=new Definition();
+          def.phaseName=line.substring(1,line.length()-1).trim();
+          def.lineNumber=lineNumber;
+          defs.definitions.put(def.phaseName.toLowerCase(),def);
+          continue;
+        }
+        String[] parts = line.split("=", 2);
+        if (parts.length < 2 || def==null) {
+          System.out.println("Phase rules file "+filePath+", line "+lineNumber+" is ignored: "+line);
+          continue;
+        }
+        def.properties.put(parts[0].trim().toLowerCase(),parts[1].trim());
+      }
+    } catch (IOException ex) {
+      System.out.println("Exception reading the phase rules: \n"+ex);
+      return null;
+    }
+    return defs;
+  }
+
+  /**
+   * Returns the definition for the phase with the given name (the case is ignored) or null.
+   */
+  public Definition get(String phaseName) {
+    return (phaseName==null)?null:definitions.get(phaseName.toLowerCase());
+  }
+
+  public int size() {
+    return definitions.size();
+  }
+}
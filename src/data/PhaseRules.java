@@ -0,0 +1,505 @@
+package data;
+
+import structures.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/**
+ * Specific for conference: the rules of the phases of the reviewing process.
+ * The other phases referred to by a rule are found once, when the rules are made.
+ */
+
+public class PhaseRules {
+  /**
+   * Makes the rule for the phase or returns null if there is no rule for this phase.
+   */
+  public static PhaseRule makeRule(Phase phase, StatusChecker checker) {
+    if (phase==null || phase.name==null)
+      return null;
+    String name=phase.name;
+    if (name.equalsIgnoreCase("Assignment to PC Reviewers"))
+      return new PCAssignmentRule(phase,checker);
+    if (name.equalsIgnoreCase("Assignment to External Reviewers"))
+      return new ExternalAssignmentRule(phase,checker);
+    if (name.equalsIgnoreCase("Reviewing"))
+      return new ReviewingRule(phase,checker);
+    if (name.equalsIgnoreCase("Discussion"))
+      return new DiscussionRule(phase,checker);
+    if (name.equalsIgnoreCase("Review Summarization"))
+      return new SummarizationRule(phase,checker);
+    if (name.equalsIgnoreCase("Round 1 Decision"))
+      return new FirstDecisionRule(phase,checker);
+    if (name.equalsIgnoreCase("Recommendation Update"))
+      return new RecommendationUpdateRule(phase,checker);
+    if (name.equalsIgnoreCase("Final Decision"))
+      return new FinalDecisionRule(phase,checker);
+    return null;
+  }
+
+  /**
+   * Makes the rules for all phases of the process in the order of the phases;
+   * the elements for the phases without rules are null. The phases defined in the rules file
+   * (if not null) get the rules made from the definitions; the others get the built-in rules.
+   */
+  public static PhaseRule[] makeRules(GlobalProcess gProc, StatusChecker checker,
+                                      PhaseRuleDefinitions definitions) {
+    PhaseRule rules[]=new PhaseRule[gProc.phases.size()];
+    int i=0;
+    for (Phase phase:gProc.phases.values())
+      rules[i++]=makeRule(phase,checker,(definitions==null)?null:definitions.get(phase.name));
+    return rules;
+  }
+
+  /**
+   * Makes the rule for the phase from the definition; if there is no definition or it says
+   * "rule=builtin" or is wrong, the built-in rule is made.
+   */
+  public static PhaseRule makeRule(Phase phase, StatusChecker checker, PhaseRuleDefinitions.Definition def) {
+    if (def==null)
+      return makeRule(phase,checker);
+    String kind=def.get("rule");
+    if (kind!=null && kind.equalsIgnoreCase("builtin"))
+      return makeRule(phase,checker);
+    if (kind!=null && kind.equalsIgnoreCase("none"))
+      return null;
+    try {
+      if (kind!=null && !kind.equalsIgnoreCase("count"))
+        throw new IllegalArgumentException("rule="+kind);
+      return new DeclaredPhaseRule(phase,def,checker);
+    } catch (IllegalArgumentException ex) {
+      // the rules are made by each checking thread, but the error is reported once
+      synchronized (def) {
+        if (!def.reported)
+          System.out.println("Wrong rule for the phase \""+phase.name+"\" (line "+def.lineNumber+
+              "): "+ex.getMessage()+"; the built-in rule is used");
+        def.reported=true;
+      }
+    }
+    return makeRule(phase,checker);
+  }
+
+  /**
+   * Keeps the two earliest of the dates given one after another.
+   */
+  static class TwoEarliest {
+    LocalDate d1=null, d2=null;
+
+    void add(LocalDate d) {
+      if (d1 == null)
+        d1 = d;
+      else
+      if (d.isBefore(d1)) {
+        d2=d1; d1=d;
+      }
+      else
+      if (d2==null || d.isBefore(d2))
+        d2=d;
+    }
+  }
+
+  /**
+   * The process has 2 assignments of PC members made by a paper chair.
+   */
+  static class PCAssignmentRule extends PhaseRule {
+    TwoEarliest dates=null;
+
+    PCAssignmentRule(Phase phase, StatusChecker checker) {
+      super(phase,checker);
+    }
+
+    protected void begin(ProcessInstance process) {
+      super.begin(process);
+      dates=new TwoEarliest();
+    }
+
+    protected boolean startThread(ProcessThread thread, int actorRoles) {
+      return (actorRoles & GlobalProcess.PAPER_CHAIR_ROLE)!=0;
+    }
+
+    protected void visitTask(TaskInstance task, LocalDate day) {
+      if (!is(task,ActionType.ASSIGNMENT) || task.actorsInvolved.size()<2)
+        return;
+      for (int aIdx=1; aIdx<task.actorsInvolved.size(); aIdx++) {
+        Actor aAss=task.actorsInvolved.get(aIdx);
+        //check if the assigned actor is a PC member and has a thread in the process
+        if (GlobalProcess.isPCMemberRole(process.roleAssignments.get(aAss.id)) &&
+            process.threads.get(aAss.id)!=null) {
+          setDelayed(task,isAfterEnd(day),0);
+          dates.add(day);
+        }
+      }
+    }
+
+    protected LocalDate finish() {
+      return (dates.d2!=null)?dates.d2:getLifetimeEnd();
+    }
+  }
+
+  /**
+   * The process has 2 assigned external reviewers who accepted the invitations
+   * or, instead of them, two secondary reviewers.
+   */
+  static class ExternalAssignmentRule extends PhaseRule {
+    TwoEarliest dates=null;
+    ArrayList<ProcessThread> sThreads=new ArrayList<>(5);
+    // the state of the current thread
+    boolean external=false, assigning=false, hasAccepted=false;
+    LocalDate acceptDate=null, reviewDate=null;
+
+    ExternalAssignmentRule(Phase phase, StatusChecker checker) {
+      super(phase,checker);
+    }
+
+    protected void begin(ProcessInstance process) {
+      super.begin(process);
+      dates=new TwoEarliest();
+      sThreads.clear();
+    }
+
+    protected boolean startThread(ProcessThread th, int actorRoles) {
+      external=hasRole(th,GlobalProcess.EXTERNAL_ROLE) && notDeclined(th);
+      if (hasRole(th,GlobalProcess.SECONDARY_ROLE) && notDeclined(th)) {
+        if (sThreads.isEmpty())
+          sThreads.add(th);
+        else {
+          LocalDateTime dt=th.tasks.get(0).actual.start;
+          int idx=0;
+          for (int i=sThreads.size()-1; i>=0; i--)
+            if (sThreads.get(i).tasks.get(0).actual.start.isBefore(dt))
+              idx=i+1;
+          sThreads.add(idx,th);
+        }
+      }
+      assigning=(actorRoles & GlobalProcess.PAPER_CHAIR_ROLE)!=0 || hasRole(th,GlobalProcess.PC_MEMBER_ROLE);
+      hasAccepted=false;
+      acceptDate=reviewDate=null;
+      return external || assigning;
+    }
+
+    private boolean notDeclined(ProcessThread th) {
+      return th.tasks.size()>1 || !is(th.tasks.get(0),ActionType.DECLINE);
+    }
+
+    protected void visitTask(TaskInstance task, LocalDate day) {
+      if (external && !hasAccepted)
+        if (is(task,ActionType.ACCEPT)) {
+          hasAccepted=true;
+          acceptDate=day;
+          setDelayed(task,isAfterEnd(day),0);
+        }
+        else
+        if (reviewDate==null && is(task,ActionType.REVIEW_RELATED))
+          reviewDate=day;  //acceptance record may be missing in the log
+      if (assigning &&
+          (is(task,ActionType.ASSIGNMENT) || is(task,ActionType.INVITATION)) &&
+          task.actorsInvolved.size()>1)
+        setDelayed(task,isAfterEnd(day),2);
+    }
+
+    protected void endThread() {
+      if (external)
+        if (hasAccepted)
+          dates.add(acceptDate);
+        else
+        if (reviewDate!=null)
+          dates.add(reviewDate);
+    }
+
+    protected LocalDate finish() {
+      LocalDate d1=dates.d1, d2=dates.d2;
+      if (d1!=null && d2==null && sThreads.size()>1) {
+        //some processes may have two secondaries instead of two externals
+        ProcessThread th=sThreads.get(sThreads.size()-1);
+        boolean accepted=false;
+        for (TaskInstance rTask:th.tasks)
+          if (is(rTask,ActionType.ACCEPT)) {
+            accepted=true;
+            d2=rTask.actual.getStart().toLocalDate();
+            setDelayed(rTask,isAfterEnd(d2),1);
+            break;
+          }
+        if (!accepted)
+          for (TaskInstance rTask:th.tasks)
+            if (is(rTask,ActionType.REVIEW_RELATED)) {
+              d2=rTask.actual.getStart().toLocalDate();
+              break;
+            }
+        if (d2!=null && d2.isBefore(d1))
+          d2=d1;
+      }
+      sThreads.clear();
+      return (d2!=null)?d2:getLifetimeEnd();
+    }
+  }
+
+  /**
+   * At least 4 actors, including 2 PC members and 2 externals, provided their complete reviews.
+   * A review is delayed when it is made after the start of the first decision and before
+   * the revision submission, or after the start of the final decision.
+   */
+  static class ReviewingRule extends PhaseRule {
+    Phase decision1Phase=null, revPhase=null, finalPhase=null;
+    LocalDate dLast=null;
+    int nReviewsDone=0;
+    boolean completed=false;
+
+    ReviewingRule(Phase phase, StatusChecker checker) {
+      super(phase,checker);
+      decision1Phase=gProc.phases.get("Round 1 Decision");
+      revPhase=gProc.phases.get("Revision Submission");
+      finalPhase=gProc.phases.get("Final Decision");
+    }
+
+    protected void begin(ProcessInstance process) {
+      super.begin(process);
+      dLast=null;
+      nReviewsDone=0;
+    }
+
+    protected boolean startThread(ProcessThread th, int actorRoles) {
+      completed=false;
+      return !hasRole(th,GlobalProcess.PAPER_CHAIR_ROLE);
+    }
+
+    protected void visitTask(TaskInstance task, LocalDate day) {
+      if (!is(task,ActionType.REVIEW))
+        return;
+      if (!completed) {
+        setDelayed(task,isAfterEnd(day),0);
+        if (isComplete(task)) {
+          completed=true;
+          if (dLast==null || dLast.isBefore(day))
+            dLast=day;
+        }
+      }
+      if (decision1Phase!=null && revPhase!=null && finalPhase!=null)
+        setDelayed(task,!day.isBefore(decision1Phase.startDate) &&
+            (day.isBefore(revPhase.startDate) || !day.isBefore(finalPhase.startDate)),1);
+    }
+
+    protected void endThread() {
+      if (completed) ++nReviewsDone;
+    }
+
+    protected LocalDate finish() {
+      return (nReviewsDone>=4)?dLast:getLifetimeEnd();
+    }
+  }
+
+  /**
+   * At least 3 actors, including 2 PC members and at least 1 external, added their comments
+   * to the discussion; otherwise, a summarizing review or a decision ends the discussion.
+   */
+  static class DiscussionRule extends PhaseRule {
+    Phase decisionPhase=null;
+    LocalDate dLast=null, dSummary=null, dDecision=null;
+    int nActorsInvolved=0;
+    // the state of the current thread
+    boolean chair=false, pcMember=false, commented=false, done=false;
+
+    DiscussionRule(Phase phase, StatusChecker checker) {
+      super(phase,checker);
+      decisionPhase=gProc.phases.get("Round 1 Decision");
+      if (decisionPhase==null)
+        decisionPhase=gProc.phases.get("Revision Submission");
+    }
+
+    protected void begin(ProcessInstance process) {
+      super.begin(process);
+      dLast=dSummary=dDecision=null;
+      nActorsInvolved=0;
+    }
+
+    protected boolean startThread(ProcessThread th, int actorRoles) {
+      chair=hasRole(th,GlobalProcess.PAPER_CHAIR_ROLE);
+      pcMember=hasRole(th,GlobalProcess.PC_MEMBER_ROLE);
+      commented=done=false;
+      return !chair || decisionPhase!=null;
+    }
+
+    protected void visitTask(TaskInstance task, LocalDate day) {
+      if (done)
+        return;
+      if (chair) {
+        // the first decision of each chair before the end of the decision phase
+        if (is(task,ActionType.DECISION) && day.isBefore(decisionPhase.endDate)) {
+          if (dDecision==null || dDecision.isAfter(day))
+            dDecision=day;
+          done=true;
+        }
+      }
+      else
+      if (is(task,ActionType.COMMENT)) {
+        setDelayed(task,isAfterEnd(day),0);
+        if (!commented) {
+          commented=true;
+          if (dLast==null || dLast.isBefore(day))
+            dLast=day;
+        }
+      }
+      else
+      if (dSummary==null && commented && pcMember && is(task,ActionType.REVIEW) &&
+          isAfterEnd(day) && isComplete(task)) {
+        dSummary=day;
+        done=true;
+      }
+    }
+
+    protected void endThread() {
+      if (!chair && commented)
+        ++nActorsInvolved;
+    }
+
+    protected LocalDate finish() {
+      return (nActorsInvolved>=3)?dLast:(dSummary!=null)?dSummary:
+          (dDecision!=null)?dDecision:getLifetimeEnd();
+    }
+  }
+
+  /**
+   * The latest complete review of a PC member made after commenting and before the end of
+   * the first decision; otherwise, the first decision of a chair.
+   */
+  static class SummarizationRule extends PhaseRule {
+    Phase decisionPhase=null;
+    LocalDate dSum=null, dDecision=null;
+    // the state of the current thread
+    boolean pcMember=false, chair=false, discussed=false;
+
+    SummarizationRule(Phase phase, StatusChecker checker) {
+      super(phase,checker);
+      decisionPhase=gProc.phases.get("Round 1 Decision");
+    }
+
+    protected void begin(ProcessInstance process) {
+      super.begin(process);
+      dSum=dDecision=null;
+    }
+
+    protected boolean startThread(ProcessThread th, int actorRoles) {
+      pcMember=hasRole(th,GlobalProcess.PC_MEMBER_ROLE);
+      chair=hasRole(th,GlobalProcess.PAPER_CHAIR_ROLE);
+      discussed=false;
+      return pcMember || chair;
+    }
+
+    protected void visitTask(TaskInstance task, LocalDate day) {
+      if (pcMember)
+        if (discussed && is(task,ActionType.REVIEW) && isComplete(task) &&
+            decisionPhase!=null && day.isBefore(decisionPhase.endDate)) {
+          if (dSum == null || dSum.isBefore(day))
+            dSum = day;
+          setDelayed(task,isAfterEnd(day),0);
+        } else
+          discussed = discussed || is(task,ActionType.COMMENT);
+      if (chair && dDecision==null && decisionPhase!=null &&
+          is(task,ActionType.DECISION) && day.isBefore(decisionPhase.endDate))
+        dDecision=day;
+    }
+
+    protected LocalDate finish() {
+      return (dSum!=null)?dSum:(dDecision!=null)?dDecision:getLifetimeEnd();
+    }
+  }
+
+  /**
+   * The earliest decision of a chair made before the start of the final decision.
+   */
+  static class FirstDecisionRule extends PhaseRule {
+    Phase finalPhase=null;
+    LocalDate d=null;
+
+    FirstDecisionRule(Phase phase, StatusChecker checker) {
+      super(phase,checker);
+      finalPhase=gProc.phases.get("Final Decision");
+    }
+
+    protected void begin(ProcessInstance process) {
+      super.begin(process);
+      d=null;
+    }
+
+    protected boolean startThread(ProcessThread th, int actorRoles) {
+      return finalPhase!=null && hasRole(th,GlobalProcess.PAPER_CHAIR_ROLE);
+    }
+
+    protected void visitTask(TaskInstance task, LocalDate day) {
+      if (is(task,ActionType.DECISION) && day.isBefore(finalPhase.startDate)) {
+        setDelayed(task,isAfterEnd(day),0);
+        if (d==null || d.isAfter(day))
+          d=day;
+      }
+    }
+
+    protected LocalDate finish() {
+      return (d!=null)?d:getLifetimeEnd();
+    }
+  }
+
+  /**
+   * The earliest complete review of a PC member made after the end of the revision submission.
+   */
+  static class RecommendationUpdateRule extends PhaseRule {
+    Phase revPhase=null;
+    LocalDate d=null;
+
+    RecommendationUpdateRule(Phase phase, StatusChecker checker) {
+      super(phase,checker);
+      revPhase=gProc.phases.get("Revision Submission");
+    }
+
+    protected void begin(ProcessInstance process) {
+      super.begin(process);
+      d=null;
+    }
+
+    protected boolean startThread(ProcessThread th, int actorRoles) {
+      return revPhase!=null && hasRole(th,GlobalProcess.PC_MEMBER_ROLE);
+    }
+
+    protected void visitTask(TaskInstance task, LocalDate day) {
+      if (is(task,ActionType.REVIEW) && isComplete(task) && day.isAfter(revPhase.endDate)) {
+        setDelayed(task,isAfterEnd(day),0);
+        if (d==null || d.isAfter(day))
+          d=day;
+      }
+    }
+
+    protected LocalDate finish() {
+      return (d!=null)?d:getLifetimeEnd();
+    }
+  }
+
+  /**
+   * The first decision of a chair made not earlier than the start of the phase.
+   */
+  static class FinalDecisionRule extends PhaseRule {
+    LocalDate d=null;
+
+    FinalDecisionRule(Phase phase, StatusChecker checker) {
+      super(phase,checker);
+    }
+
+    protected void begin(ProcessInstance process) {
+      super.begin(process);
+      d=null;
+    }
+
+    protected boolean startThread(ProcessThread th, int actorRoles) {
+      return hasRole(th,GlobalProcess.PAPER_CHAIR_ROLE);
+    }
+
+    protected void visitTask(TaskInstance task, LocalDate day) {
+      if (is(task,ActionType.DECISION) && !day.isBefore(phase.startDate)) {
+        setDelayed(task,isAfterEnd(day),0);
+        if (d==null) d=day;
+      }
+    }
+
+    protected LocalDate finish() {
+      return (d!=null)?d:getLifetimeEnd();
+    }
+  }
+}
@@ -0,0 +1,493 @@
+package data;
+
+import structures.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Saves a loaded GlobalProcess (phases, action types, actors, processes, threads, tasks,
+ * role assignments with their history, and phase completeness dates) to a compact binary file and restores it.
+ * The data are stored by columns: a table of all distinct strings is followed by arrays
+ * of string indexes, dates and offsets, which are read from the memory-mapped file
+ * by bulk operations.
+ * The header of the file contains the sizes, modification times and hashes of the source files;
+ * the snapshot is not used when any of the source files has been changed.
+ * Times are stored with the precision of seconds.
+ */
+
+public class ProcessSnapshot {
+  public static final int MAGIC=0x50565331, VERSION=3;
+  // The hash of a source file is computed from this number of blocks of the given size
+  // taken at evenly spaced positions, including the beginning and the end of the file;
+  // a change elsewhere in a large file is detected by the modification time
+  public static int N_HASH_BLOCKS=16, HASH_BLOCK_SIZE=64*1024;
+
+  private static final long NO_TIME=Long.MIN_VALUE;
+
+  /**
+   * Writes the snapshot of the process model. The source files are the files the model
+   * was loaded from; the snapshot will be valid as long as these files do not change.
+   */
+  public static boolean save(GlobalProcess gProc, String snapshotPath, List<String> sourcePaths) {
+    if (gProc==null || snapshotPath==null)
+      return false;
+    File tmpFile=new File(snapshotPath+".tmp");
+    try (DataOutputStream out=new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tmpFile),1<<16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeFingerprints(out,sourcePaths);
+      new ColumnWriter().write(gProc,out);
+    } catch (IOException ex) {
+      System.out.println("Failed to write the snapshot "+snapshotPath+": "+ex);
+      tmpFile.delete();
+      return false;
+    }
+    try {
+      Files.move(tmpFile.toPath(),Paths.get(snapshotPath),StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException ex) {
+      System.out.println("Failed to write the snapshot "+snapshotPath+": "+ex);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Restores the process model from the snapshot.
+   * Returns null if the snapshot does not exist, cannot be read,
+   * or was made from different versions of the source files.
+   */
+  public static GlobalProcess load(String snapshotPath, List<String> sourcePaths) {
+    if (snapshotPath==null || !new File(snapshotPath).isFile())
+      return null;
+    try (FileChannel channel=FileChannel.open(Paths.get(snapshotPath),StandardOpenOption.READ)) {
+      if (channel.size()>Integer.MAX_VALUE)
+        return null;
+      ByteBuffer buf=channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+      if (buf.getInt()!=MAGIC || buf.getInt()!=VERSION)
+        return null;
+      if (!fingerprintsMatch(buf,sourcePaths)) {
+        System.out.println("The snapshot "+snapshotPath+" is outdated");
+        return null;
+      }
+      return new ColumnReader(buf).read();
+    } catch (IOException | RuntimeException ex) {
+      System.out.println("Failed to read the snapshot "+snapshotPath+": "+ex);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the size, hash and modification time of the file; the size is -1 if the file does not exist.
+   */
+  public static long[] getFingerprint(String path) throws IOException {
+    long fp[]={-1,0,0};
+    if (path==null || !new File(path).isFile())
+      return fp;
+    fp[2]=new File(path).lastModified();
+    try (FileChannel channel=FileChannel.open(Paths.get(path),StandardOpenOption.READ)) {
+      long size=channel.size();
+      fp[0]=size;
+      CRC32 crc=new CRC32();
+      ByteBuffer block=ByteBuffer.allocate(HASH_BLOCK_SIZE);
+      // a small file is hashed completely
+      boolean whole=size<=(long)N_HASH_BLOCKS*HASH_BLOCK_SIZE;
+      long nBlocks=(whole)?(size+HASH_BLOCK_SIZE-1)/HASH_BLOCK_SIZE:N_HASH_BLOCKS;
+      for (long i=0; i<nBlocks; i++) {
+        long pos=(whole)?i*HASH_BLOCK_SIZE:i*(size-HASH_BLOCK_SIZE)/Math.max(1,nBlocks-1);
+        block.clear();
+        while (block.hasRemaining() && pos+block.position()<size)
+          if (channel.read(block,pos+block.position())<0)
+            break;
+        block.flip();
+        crc.update(block);
+      }
+      fp[1]=crc.getValue();
+    }
+    return fp;
+  }
+
+  private static void writeFingerprints(DataOutputStream out, List<String> sourcePaths) throws IOException {
+    int n=(sourcePaths==null)?0:sourcePaths.size();
+    out.writeInt(n);
+    for (int i=0; i<n; i++) {
+      long fp[]=getFingerprint(sourcePaths.get(i));
+      out.writeLong(fp[0]);
+      out.writeLong(fp[1]);
+      out.writeLong(fp[2]);
+    }
+  }
+
+  private static boolean fingerprintsMatch(ByteBuffer buf, List<String> sourcePaths) throws IOException {
+    int n=buf.getInt();
+    if (n!=((sourcePaths==null)?0:sourcePaths.size()))
+      return false;
+    boolean match=true;
+    for (int i=0; i<n; i++) {
+      long size=buf.getLong(), hash=buf.getLong(), modified=buf.getLong();
+      if (!match)
+        continue;
+      long fp[]=getFingerprint(sourcePaths.get(i));
+      match=fp[0]==size && fp[1]==hash && fp[2]==modified;
+    }
+    return match;
+  }
+
+  private static long toEpochSecond(LocalDateTime t) {
+    return (t==null)?NO_TIME:t.toEpochSecond(ZoneOffset.UTC);
+  }
+
+  private static LocalDateTime toTime(long sec) {
+    return (sec==NO_TIME)?null:LocalDateTime.ofEpochSecond(sec,0,ZoneOffset.UTC);
+  }
+
+  /**
+   * Collects the columns of the model and writes them after the table of strings.
+   */
+  private static class ColumnWriter {
+    private Map<String,Integer> stringIdx=new HashMap<>();
+    private List<String> strings=new ArrayList<>();
+
+    private int str(String s) {
+      if (s==null)
+        return -1;
+      Integer idx=stringIdx.get(s);
+      if (idx==null) {
+        idx=strings.size();
+        strings.add(s);
+        stringIdx.put(s,idx);
+      }
+      return idx;
+    }
+
+    private int[] strList(List<String> list) {
+      int a[]=new int[list.size()];
+      for (int i=0; i<a.length; i++)
+        a[i]=str(list.get(i));
+      return a;
+    }
+
+    void write(GlobalProcess gProc, DataOutputStream out) throws IOException {
+      List<Object> columns=new ArrayList<>(64);
+
+      // phases
+      int nPhases=(gProc.phases==null)?0:gProc.phases.size();
+      int phName[]=new int[nPhases];
+      long phStart[]=new long[nPhases], phEnd[]=new long[nPhases];
+      int i=0;
+      if (gProc.phases!=null)
+        for (Phase ph:gProc.phases.values()) {
+          phName[i]=str(ph.name);
+          phStart[i]=ph.startDate.toEpochDay();
+          phEnd[i++]=ph.endDate.toEpochDay();
+        }
+      columns.add(phName); columns.add(phStart); columns.add(phEnd);
+
+      // roles; mode of the role priorities: 0 - none, 1 - the same list as the actor roles, 2 - own list
+      int roles[]=(gProc.actorRoles==null)?null:strList(gProc.actorRoles);
+      int prMode=(Actor.rolePriorities==null)?0:(Actor.rolePriorities==gProc.actorRoles)?1:2;
+      int priorities[]=(prMode==2)?strList(Actor.rolePriorities):new int[0];
+      columns.add(new int[]{(roles==null)?0:1, prMode});
+      columns.add((roles==null)?new int[0]:roles);
+      columns.add(priorities);
+
+      // action types
+      int nTypes=(gProc.actionTypes==null)?0:gProc.actionTypes.size();
+      int atKey[]=new int[nTypes], atName[]=new int[nTypes], atPhase[]=new int[nTypes], atRole[]=new int[nTypes],
+          atTargetType[]=new int[nTypes], atTargetRole[]=new int[nTypes], atCode[]=new int[nTypes];
+      i=0;
+      if (gProc.actionTypes!=null)
+        for (Map.Entry<String,ActionType> e:gProc.actionTypes.entrySet()) {
+          ActionType at=e.getValue();
+          atKey[i]=str(e.getKey()); atName[i]=str(at.typeName); atPhase[i]=str(at.phaseName);
+          atRole[i]=str(at.actorRole); atTargetType[i]=str(at.targetType); atTargetRole[i]=str(at.targetRole);
+          atCode[i++]=str(at.code);
+        }
+      columns.add(atKey); columns.add(atName); columns.add(atPhase); columns.add(atRole);
+      columns.add(atTargetType); columns.add(atTargetRole); columns.add(atCode);
+
+      // actors
+      int nActors=(gProc.actors==null)?0:gProc.actors.size(), nAsg=0;
+      if (gProc.actors!=null)
+        for (Actor a:gProc.actors.values())
+          nAsg+=a.processRoleAssignments.size();
+      int acKey[]=new int[nActors], acId[]=new int[nActors], acRole[]=new int[nActors],
+          acAsgOffsets[]=new int[nActors+1], acAsgProcess[]=new int[nAsg], acAsgRole[]=new int[nAsg];
+      long acStart[]=new long[nActors], acEnd[]=new long[nActors];
+      i=0;
+      int k=0;
+      if (gProc.actors!=null)
+        for (Map.Entry<String,Actor> e:gProc.actors.entrySet()) {
+          Actor a=e.getValue();
+          acKey[i]=str(e.getKey()); acId[i]=str(a.id); acRole[i]=str(a.generalRole);
+          acStart[i]=toEpochSecond(a.start); acEnd[i]=toEpochSecond(a.end);
+          acAsgOffsets[i++]=k;
+          for (Map.Entry<String,String> r:a.processRoleAssignments.entrySet()) {
+            acAsgProcess[k]=str(r.getKey());
+            acAsgRole[k++]=str(r.getValue());
+          }
+        }
+      acAsgOffsets[nActors]=k;
+      columns.add(acKey); columns.add(acId); columns.add(acRole); columns.add(acStart); columns.add(acEnd);
+      columns.add(acAsgOffsets); columns.add(acAsgProcess); columns.add(acAsgRole);
+
+      // processes, threads, and tasks
+      int nProc=(gProc.processes==null)?0:gProc.processes.size(), nRoles=0, nDone=0, nThreads=0, nTasks=0, nInvolved=0, nChanges=0;
+      if (gProc.processes!=null)
+        for (ProcessInstance pi:gProc.processes) {
+          nRoles+=pi.roleAssignments.size();
+          for (String aId:pi.roleHistory.getActorIds())
+            nChanges+=pi.roleHistory.getNChanges(aId);
+          if (pi.phaseDone!=null)
+            nDone+=pi.phaseDone.size();
+          nThreads+=pi.threads.size();
+          for (ProcessThread th:pi.threads.values()) {
+            nTasks+=th.tasks.size();
+            for (TaskInstance t:th.tasks)
+              nInvolved+=t.actorsInvolved.size();
+          }
+        }
+      // -1 in the counts of the phase completeness dates means that the process has no map of the dates
+      int prId[]=new int[nProc], prType[]=new int[nProc], prRoleOffsets[]=new int[nProc+1],
+          prRoleActor[]=new int[nRoles], prRole[]=new int[nRoles], prDoneCounts[]=new int[nProc],
+          prDonePhase[]=new int[nDone], prThreadOffsets[]=new int[nProc+1];
+      long prDoneDate[]=new long[nDone];
+      int thKey[]=new int[nThreads], thActor[]=new int[nThreads], thRole[]=new int[nThreads],
+          thProcess[]=new int[nThreads], thTaskOffsets[]=new int[nThreads+1];
+      int tId[]=new int[nTasks], tAction[]=new int[nTasks], tStatus[]=new int[nTasks], tOutcome[]=new int[nTasks],
+          tDelayed[]=new int[nTasks], tActorOffsets[]=new int[nTasks+1], tActors[]=new int[nInvolved];
+      long tStart[]=new long[nTasks], tEnd[]=new long[nTasks], tSchedStart[]=new long[nTasks], tSchedEnd[]=new long[nTasks];
+      int prHistOffsets[]=new int[nProc+1], hActor[]=new int[nChanges], hRole[]=new int[nChanges];
+      long hTime[]=new long[nChanges];
+      int pIdx=0, rIdx=0, dIdx=0, thIdx=0, tIdx=0, aIdx=0, hIdx=0;
+      if (gProc.processes!=null)
+        for (ProcessInstance pi:gProc.processes) {
+          prId[pIdx]=str(pi.id); prType[pIdx]=str(pi.type);
+          prRoleOffsets[pIdx]=rIdx;
+          for (Map.Entry<String,String> r:pi.roleAssignments.entrySet()) {
+            prRoleActor[rIdx]=str(r.getKey());
+            prRole[rIdx++]=str(r.getValue());
+          }
+          prHistOffsets[pIdx]=hIdx;
+          for (String aId:pi.roleHistory.getActorIds())
+            for (int c=0; c<pi.roleHistory.getNChanges(aId); c++) {
+              hActor[hIdx]=str(aId);
+              hTime[hIdx]=pi.roleHistory.getChangeTime(aId,c);
+              hRole[hIdx++]=str(pi.roleHistory.getChangeRole(aId,c));
+            }
+          prDoneCounts[pIdx]=(pi.phaseDone==null)?-1:pi.phaseDone.size();
+          if (pi.phaseDone!=null)
+            for (Map.Entry<String,LocalDate> d:pi.phaseDone.entrySet()) {
+              prDonePhase[dIdx]=str(d.getKey());
+              prDoneDate[dIdx++]=d.getValue().toEpochDay();
+            }
+          prThreadOffsets[pIdx++]=thIdx;
+          for (Map.Entry<String,ProcessThread> e:pi.threads.entrySet()) {
+            ProcessThread th=e.getValue();
+            thKey[thIdx]=str(e.getKey()); thActor[thIdx]=str(th.actor.id); thRole[thIdx]=str(th.role);
+            thProcess[thIdx]=str(th.processID);
+            thTaskOffsets[thIdx++]=tIdx;
+            for (TaskInstance t:th.tasks) {
+              tId[tIdx]=str(t.id); tAction[tIdx]=str(t.actionType);
+              tStatus[tIdx]=str(t.status); tOutcome[tIdx]=str(t.outcome);
+              tStart[tIdx]=(t.actual==null)?NO_TIME:toEpochSecond(t.actual.start);
+              tEnd[tIdx]=(t.actual==null)?NO_TIME:toEpochSecond(t.actual.end);
+              tSchedStart[tIdx]=(t.scheduled==null)?NO_TIME:toEpochSecond(t.scheduled.start);
+              tSchedEnd[tIdx]=(t.scheduled==null)?NO_TIME:toEpochSecond(t.scheduled.end);
+              tDelayed[tIdx]=(t.isDelayed)?1:0;
+              tActorOffsets[tIdx++]=aIdx;
+              for (Actor a:t.actorsInvolved)
+                tActors[aIdx++]=str(a.id);
+            }
+          }
+        }
+      prRoleOffsets[nProc]=rIdx; prThreadOffsets[nProc]=thIdx; prHistOffsets[nProc]=hIdx;
+      thTaskOffsets[nThreads]=tIdx; tActorOffsets[nTasks]=aIdx;
+      columns.add(prId); columns.add(prType); columns.add(prRoleOffsets); columns.add(prRoleActor); columns.add(prRole);
+      columns.add(prDoneCounts); columns.add(prDonePhase); columns.add(prDoneDate); columns.add(prThreadOffsets);
+      columns.add(thKey); columns.add(thActor); columns.add(thRole); columns.add(thProcess); columns.add(thTaskOffsets);
+      columns.add(tId); columns.add(tAction); columns.add(tStatus); columns.add(tOutcome);
+      columns.add(tStart); columns.add(tEnd); columns.add(tSchedStart); columns.add(tSchedEnd);
+      columns.add(tDelayed); columns.add(tActorOffsets); columns.add(tActors);
+      columns.add(prHistOffsets); columns.add(hActor); columns.add(hTime); columns.add(hRole);
+
+      // the table of strings: the lengths in bytes followed by the bytes of all strings
+      byte encoded[][]=new byte[strings.size()][];
+      int lengths[]=new int[encoded.length];
+      for (i=0; i<encoded.length; i++) {
+        encoded[i]=strings.get(i).getBytes(StandardCharsets.UTF_8);
+        lengths[i]=encoded[i].length;
+      }
+      writeInts(out,lengths);
+      for (byte b[]:encoded)
+        out.write(b);
+
+      for (Object column:columns)
+        if (column instanceof int[])
+          writeInts(out,(int[])column);
+        else
+          writeLongs(out,(long[])column);
+    }
+
+    private static void writeInts(DataOutputStream out, int a[]) throws IOException {
+      out.writeInt(a.length);
+      ByteBuffer bb=ByteBuffer.allocate(a.length*4);
+      bb.asIntBuffer().put(a);
+      out.write(bb.array());
+    }
+
+    private static void writeLongs(DataOutputStream out, long a[]) throws IOException {
+      out.writeInt(a.length);
+      ByteBuffer bb=ByteBuffer.allocate(a.length*8);
+      bb.asLongBuffer().put(a);
+      out.write(bb.array());
+    }
+  }
+
+  /**
+   * Reads the columns in the order they were written by the ColumnWriter and rebuilds the model.
+   */
+  private static class ColumnReader {
+    private ByteBuffer buf;
+    private String strings[]=null;
+
+    ColumnReader(ByteBuffer buf) {
+      this.buf=buf;
+    }
+
+    private int[] ints() {
+      int a[]=new int[buf.getInt()];
+      buf.asIntBuffer().get(a);
+      buf.position(buf.position()+a.length*4);
+      return a;
+    }
+
+    private long[] longs() {
+      long a[]=new long[buf.getInt()];
+      buf.asLongBuffer().get(a);
+      buf.position(buf.position()+a.length*8);
+      return a;
+    }
+
+    private String str(int idx) {
+      return (idx<0)?null:strings[idx];
+    }
+
+    private List<String> strList(int a[]) {
+      List<String> list=new ArrayList<>(a.length);
+      for (int idx:a)
+        list.add(str(idx));
+      return list;
+    }
+
+    GlobalProcess read() {
+      int lengths[]=ints();
+      strings=new String[lengths.length];
+      byte bytes[]=new byte[4096];
+      for (int i=0; i<lengths.length; i++) {
+        if (bytes.length<lengths[i])
+          bytes=new byte[lengths[i]];
+        buf.get(bytes,0,lengths[i]);
+        strings[i]=new String(bytes,0,lengths[i],StandardCharsets.UTF_8);
+      }
+
+      GlobalProcess gProc=new GlobalProcess();
+
+      int phName[]=ints();
+      long phStart[]=longs(), phEnd[]=longs();
+      gProc.phases=new LinkedHashMap<>();
+      for (int i=0; i<phName.length; i++)
+        gProc.phases.put(str(phName[i]),
+            new Phase(str(phName[i]),LocalDate.ofEpochDay(phStart[i]),LocalDate.ofEpochDay(phEnd[i])));
+
+      int modes[]=ints(), roles[]=ints(), priorities[]=ints();
+      gProc.actorRoles=(modes[0]==0)?null:strList(roles);
+      Actor.rolePriorities=(modes[1]==0)?null:(modes[1]==1)?gProc.actorRoles:strList(priorities);
+
+      int atKey[]=ints(), atName[]=ints(), atPhase[]=ints(), atRole[]=ints(),
+          atTargetType[]=ints(), atTargetRole[]=ints(), atCode[]=ints();
+      gProc.actionTypes=new LinkedHashMap<>();
+      for (int i=0; i<atKey.length; i++) {
+        ActionType at=new ActionType();
+        at.typeName=str(atName[i]); at.phaseName=str(atPhase[i]); at.actorRole=str(atRole[i]);
+        at.targetType=str(atTargetType[i]); at.targetRole=str(atTargetRole[i]); at.code=str(atCode[i]);
+        gProc.actionTypes.put(str(atKey[i]),at);
+      }
+
+      int acKey[]=ints(), acId[]=ints(), acRole[]=ints();
+      long acStart[]=longs(), acEnd[]=longs();
+      int acAsgOffsets[]=ints(), acAsgProcess[]=ints(), acAsgRole[]=ints();
+      gProc.actors=new LinkedHashMap<>();
+      for (int i=0; i<acKey.length; i++) {
+        Actor a=new Actor(str(acId[i]));
+        a.generalRole=str(acRole[i]);
+        a.start=toTime(acStart[i]); a.end=toTime(acEnd[i]);
+        for (int k=acAsgOffsets[i]; k<acAsgOffsets[i+1]; k++)
+          a.processRoleAssignments.put(str(acAsgProcess[k]),str(acAsgRole[k]));
+        gProc.actors.put(str(acKey[i]),a);
+      }
+
+      int prId[]=ints(), prType[]=ints(), prRoleOffsets[]=ints(), prRoleActor[]=ints(), prRole[]=ints(),
+          prDoneCounts[]=ints(), prDonePhase[]=ints();
+      long prDoneDate[]=longs();
+      int prThreadOffsets[]=ints();
+      int thKey[]=ints(), thActor[]=ints(), thRole[]=ints(), thProcess[]=ints(), thTaskOffsets[]=ints();
+      int tId[]=ints(), tAction[]=ints(), tStatus[]=ints(), tOutcome[]=ints();
+      long tStart[]=longs(), tEnd[]=longs(), tSchedStart[]=longs(), tSchedEnd[]=longs();
+      int tDelayed[]=ints(), tActorOffsets[]=ints(), tActors[]=ints();
+      int prHistOffsets[]=ints(), hActor[]=ints();
+      long hTime[]=longs();
+      int hRole[]=ints();
+
+      Map<String,ProcessInstance> processes=new LinkedHashMap<>(Math.round(prId.length*1.5f));
+      int dIdx=0;
+      for (int p=0; p<prId.length; p++) {
+        ProcessInstance pi=new ProcessInstance(str(prId[p]));
+        pi.type=str(prType[p]);
+        for (int k=prRoleOffsets[p]; k<prRoleOffsets[p+1]; k++)
+          pi.roleAssignments.put(str(prRoleActor[k]),str(prRole[k]));
+        for (int k=prHistOffsets[p]; k<prHistOffsets[p+1]; k++)
+          pi.roleHistory.record(str(hActor[k]),hTime[k],str(hRole[k]));
+        if (prDoneCounts[p]>=0) {
+          pi.phaseDone=new LinkedHashMap<>();
+          for (int k=0; k<prDoneCounts[p]; k++, dIdx++)
+            pi.phaseDone.put(str(prDonePhase[dIdx]),LocalDate.ofEpochDay(prDoneDate[dIdx]));
+        }
+        for (int th=prThreadOffsets[p]; th<prThreadOffsets[p+1]; th++) {
+          ProcessThread thread=new ProcessThread(str(thProcess[th]),gProc.actors.get(str(thActor[th])),str(thRole[th]));
+          for (int t=thTaskOffsets[th]; t<thTaskOffsets[th+1]; t++) {
+            TaskInstance task=new TaskInstance();
+            task.id=str(tId[t]); task.actionType=str(tAction[t]);
+            task.status=str(tStatus[t]); task.outcome=str(tOutcome[t]);
+            if (tStart[t]!=NO_TIME || tEnd[t]!=NO_TIME)
+              task.actual=new TimeInterval(toTime(tStart[t]),toTime(tEnd[t]));
+            if (tSchedStart[t]!=NO_TIME || tSchedEnd[t]!=NO_TIME)
+              task.scheduled=new TimeInterval(toTime(tSchedStart[t]),toTime(tSchedEnd[t]));
+            task.isDelayed=tDelayed[t]!=0;
+            task.actorsInvolved=new ArrayList<>(tActorOffsets[t+1]-tActorOffsets[t]);
+            for (int k=tActorOffsets[t]; k<tActorOffsets[t+1]; k++)
+              task.actorsInvolved.add(gProc.actors.get(str(tActors[k])));
+            thread.addTask(task);
+          }
+          pi.addThread(str(thKey[th]),thread);
+        }
+        processes.put(pi.id,pi);
+      }
+      gProc.processes=processes.values();
+      gProc.symbols=SymbolTable.build(gProc);
+      return gProc;
+    }
+  }
+}
@@ -3,10 +3,13 @@ package data;
 import structures.*;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 import static java.time.temporal.ChronoUnit.DAYS;
 
@@ -17,11 +20,74 @@ import static java.time.temporal.ChronoUnit.DAYS;
 
 public class StatusChecker {
   private GlobalProcess gProc=null;
+  // Which codes of the statuses mean "complete"
+  private boolean completeStatus[]=null;
+  // Number of threads evaluating the processes; 1 means sequential evaluation
+  private int nThreads=1;
+  // Definitions of the rules read from a file; the phases without definitions are checked by the built-in rules
+  private PhaseRuleDefinitions ruleDefinitions=null;
+  // The rules of the phases are evaluated in one pass over the tasks of a process;
+  // since the rules keep the state of the process being evaluated, each thread has its own rules
+  private ThreadLocal<PhaseEvaluator> evaluators=
+      ThreadLocal.withInitial(() -> new PhaseEvaluator(gProc,PhaseRules.makeRules(gProc,this,ruleDefinitions)));
 
   public StatusChecker(GlobalProcess gProc) {
     this.gProc=gProc;
   }
 
+  /**
+   * Sets the definitions of the phase rules; must be called before the processes are evaluated.
+   */
+  public void setRuleDefinitions(PhaseRuleDefinitions ruleDefinitions) {
+    this.ruleDefinitions=ruleDefinitions;
+  }
+
+  public PhaseRuleDefinitions getRuleDefinitions() {
+    return ruleDefinitions;
+  }
+
+  public GlobalProcess getGlobalProcess() {
+    return gProc;
+  }
+
+  /**
+   * Makes the processes be evaluated in parallel by the given number of threads
+   * (1 or less means sequential evaluation). The results are the same as in the sequential mode,
+   * since each process only changes its own completeness dates and the delays of its own tasks.
+   */
+  public void setNThreads(int nThreads) {
+    this.nThreads=Math.max(1,nThreads);
+  }
+
+  public int getNThreads() {
+    return nThreads;
+  }
+
+  /**
+   * Checks whether the action type of the task belongs to the given class (see ActionType).
+   */
+  boolean isAction(TaskInstance task, int actionClass) {
+    return (gProc.getActionFlags(task.actionCode) & actionClass)!=0;
+  }
+
+  /**
+   * Checks whether the status of the task is "complete" using the status code.
+   */
+  boolean isComplete(TaskInstance task) {
+    if (task.statusCode<0)
+      return false;
+    if (completeStatus==null || task.statusCode>=completeStatus.length) {
+      SymbolTable st=gProc.getSymbols();
+      boolean complete[]=new boolean[Math.max(task.statusCode+1,st.size(SymbolTable.STATUS))];
+      for (int i=0; i<complete.length; i++) {
+        String status=st.decode(SymbolTable.STATUS,i);
+        complete[i]=status!=null && status.equalsIgnoreCase("complete");
+      }
+      completeStatus=complete;
+    }
+    return completeStatus[task.statusCode];
+  }
+
   /**
    * Goes through all process instances and records for each process instance when it completed different phases.
    * Returns true if successfully done.
@@ -33,20 +99,94 @@ public class StatusChecker {
       return false;
     LocalDate datesRange[]=gProc.getPhaseDatesRange();
     int nDatesGot=0;
-    for (ProcessInstance pi:gProc.processes) {
-      if (pi.threads==null || pi.threads.isEmpty())
-        continue;
-      for (Phase phase:gProc.phases.values()) {
-        LocalDate d=getPhaseCompletenessDate(phase,pi);
-        if (d==null) continue;
-        if (pi.phaseDone==null)
-          pi.phaseDone=new LinkedHashMap<>(Math.round(gProc.phases.size()*1.5f));
-        pi.phaseDone.put(phase.name,d);
-      }
-    }
+    evaluateProcesses(gProc.processes,false);
     return nDatesGot>0;
   }
 
+  /**
+   * Determines anew the phase completeness dates and the delays of the tasks
+   * in the given process instances, e.g. after new records have been appended to the log;
+   * the other processes are not affected. Returns the changes of the completeness dates
+   * in the order of the processes and phases (the list is empty if nothing has changed).
+   */
+  public List<PhaseChange> updatePhaseCompletenessDates(Collection<ProcessInstance> changed) {
+    List<PhaseChange> changes=new ArrayList<>();
+    if (gProc==null || gProc.phases==null || gProc.phases.isEmpty() || changed==null || changed.isEmpty())
+      return changes;
+    List<ProcessInstance> list=new ArrayList<>(changed);
+    // the previous maps are kept, since the evaluation makes new ones
+    List<Map<String,LocalDate>> oldDates=new ArrayList<>(list.size());
+    for (ProcessInstance pi:list)
+      oldDates.add(pi.phaseDone);
+    evaluateProcesses(list,true);
+    for (int i=0; i<list.size(); i++)
+      PhaseChange.addChanges(list.get(i),oldDates.get(i),list.get(i).phaseDone,gProc.phases.values(),changes);
+    return changes;
+  }
+
+  /**
+   * Evaluates the processes sequentially or, if more than one thread is set, in parallel
+   * on a fork-join pool. If 'reset' is true, the previous results are cleared first.
+   */
+  private void evaluateProcesses(Collection<ProcessInstance> pList, boolean reset) {
+    gProc.getSymbols(); // the codes in the model must refer to the symbol table of gProc
+    if (nThreads<=1 || pList.size()<2) {
+      for (ProcessInstance pi:pList)
+        evaluateProcess(pi,reset);
+      return;
+    }
+    // the caches filled on demand are filled before the threads start
+    prepareCaches();
+    List<ProcessInstance> list=new ArrayList<>(pList);
+    ForkJoinPool pool=new ForkJoinPool(nThreads);
+    try {
+      pool.submit(() -> list.parallelStream().forEach(pi -> evaluateProcess(pi,reset))).get();
+    } catch (InterruptedException | ExecutionException ex) {
+      System.out.println("Exception in parallel checking of the processes: \n"+ex);
+      // the remaining processes are evaluated sequentially
+      for (ProcessInstance pi:list)
+        evaluateProcess(pi,true);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private void prepareCaches() {
+    SymbolTable st=gProc.getSymbols();
+    gProc.getActionFlags(Math.max(0,st.size(SymbolTable.ACTION)-1));
+    gProc.getRoleClasses(Math.max(0,st.size(SymbolTable.ROLE)-1));
+    TaskInstance probe=new TaskInstance();
+    probe.statusCode=Math.max(0,st.size(SymbolTable.STATUS)-1);
+    isComplete(probe);
+  }
+
+  private void evaluateProcess(ProcessInstance pi, boolean reset) {
+    if (reset) {
+      pi.phaseDone=null;
+      for (ProcessThread th:pi.threads.values())
+        for (TaskInstance task:th.tasks)
+          task.isDelayed=false;
+    }
+    evaluateProcess(pi);
+  }
+
+  /**
+   * Records for the process instance when it completed different phases.
+   */
+  private void evaluateProcess(ProcessInstance pi) {
+    if (pi.threads==null || pi.threads.isEmpty())
+      return;
+    PhaseEvaluator evaluator=evaluators.get();
+    LocalDate dates[]=evaluator.evaluate(pi);
+    PhaseRule rules[]=evaluator.getRules();
+    for (int i=0; i<dates.length; i++) {
+      if (dates[i]==null) continue;
+      if (pi.phaseDone==null)
+        pi.phaseDone=new LinkedHashMap<>(Math.round(gProc.phases.size()*1.5f));
+      pi.phaseDone.put(rules[i].phase.name,dates[i]);
+    }
+  }
+
   /**
    * Checks the phase completeness status of the given process instance by days.
    * Returns a boolean array by days.
@@ -56,312 +196,11 @@ public class StatusChecker {
       return null;
     if (phase==null  || process==null)
       return null;
-    if (phase.name.equalsIgnoreCase("Assignment to PC Reviewers")) {
-      //checks if the process has 2 assignments of PC members made by a paper chair
-      LocalDate d1=null, d2=null;
-      for (Map.Entry<String, ProcessThread> e:process.threads.entrySet()) {
-        Actor actor=gProc.actors.get(e.getKey());
-        if (GlobalProcess.isPaperChairRole(actor.generalRole)) {
-          ProcessThread chairThread=e.getValue();
-          //find assignment tasks
-          for (TaskInstance task: chairThread.tasks)
-            if (task.actionType.toLowerCase().contains("assign") && task.actorsInvolved.size()>1) {
-              for (int aIdx=1; aIdx<task.actorsInvolved.size(); aIdx++) {
-                Actor aAss=task.actorsInvolved.get(aIdx);
-                if (process.roleAssignments.containsKey(aAss.id) &&
-                    GlobalProcess.isPCMemberRole(process.roleAssignments.get(aAss.id))) {
-                  //check if there is a thread of this actor
-                  ProcessThread pcMemberThread=process.threads.get(aAss.id);
-                  if (pcMemberThread!=null) {
-                    LocalDate d=task.actual.getStart().toLocalDate();
-                    task.isDelayed=d.isAfter(phase.endDate);
-                    if (d1 == null)
-                      d1 = d;
-                    else
-                    if (d.isBefore(d1)) {
-                      d2=d1; d1=d;
-                    }
-                    else
-                    if (d2==null || d.isBefore(d2))
-                      d2=d;
-                  }
-                }
-              }
-            }
-        }
-      }
-      return (d2!=null)?d2:process.getProcessLifetime().end.toLocalDate();
-    }
-    else
-    if (phase.name.equalsIgnoreCase("Assignment to External Reviewers")) {
-      //checks if the process has 2 assigned external reviewers who accepted the invitations
-      LocalDate d1=null, d2=null;
-      for (ProcessThread th:process.threads.values())
-        if (GlobalProcess.isExternalRole(th.role) &&
-            (th.tasks.size()>1 || !th.tasks.get(0).actionType.toLowerCase().contains("declines"))) {
-          boolean hasAccepted=false;
-          // find acceptance of the invitation
-          for (TaskInstance rTask:th.tasks)
-            if (rTask.actionType.toLowerCase().contains("accept")) {
-              hasAccepted=true;
-              LocalDate d = rTask.actual.getStart().toLocalDate();
-              rTask.isDelayed=d.isAfter(phase.endDate);
-              if (d1 == null)
-                d1 = d;
-              else
-              if (d.isBefore(d1)) {
-                d2=d1; d1=d;
-              }
-              else
-              if (d2==null || d.isBefore(d2))
-                d2=d;
-              break;
-            }
-          if (!hasAccepted) {  //acceptance record may be missing in the log
-            for (TaskInstance rTask:th.tasks)
-              if (rTask.actionType.toLowerCase().contains("review")) {
-                LocalDate d = rTask.actual.getStart().toLocalDate();
-                if (d1 == null)
-                  d1 = d;
-                else
-                if (d.isBefore(d1)) {
-                  d2=d1; d1=d;
-                }
-                else
-                if (d2==null || d.isBefore(d2))
-                  d2=d;
-                break;
-              }
-          }
-        }
-      if (d1!=null && d2==null) { //some processes may have two secondaries instead of two externals
-        ArrayList<ProcessThread> sThreads=new ArrayList<>(5);
-        for (ProcessThread th:process.threads.values())
-          if (GlobalProcess.isSecondaryRole(th.role) &&
-              (th.tasks.size()>1 || !th.tasks.get(0).actionType.toLowerCase().contains("declines"))) {
-            if (sThreads.isEmpty())
-              sThreads.add(th);
-            else {
-              LocalDateTime dt=th.tasks.get(0).actual.start;
-              int idx=0;
-              for (int i=sThreads.size()-1; i>=0; i--)
-                if (sThreads.get(i).tasks.get(0).actual.start.isBefore(dt))
-                  idx=i+1;
-              sThreads.add(idx,th);
-            }
-          }
-        if (sThreads.size()>1) {
-          ProcessThread th=sThreads.get(sThreads.size()-1);
-          boolean hasAccepted=false;
-          // find acceptance of the invitation
-          for (TaskInstance rTask:th.tasks)
-            if (rTask.actionType.toLowerCase().contains("accept")) {
-              hasAccepted=true;
-              LocalDate d = rTask.actual.getStart().toLocalDate();
-              rTask.isDelayed=d.isAfter(phase.endDate);
-              if (d2==null || d.isBefore(d2))
-                d2=d;
-              break;
-            }
-          if (!hasAccepted) {  //acceptance record may be missing in the log
-            for (TaskInstance rTask:th.tasks)
-              if (rTask.actionType.toLowerCase().contains("review")) {
-                LocalDate d = rTask.actual.getStart().toLocalDate();
-                if (d2==null || d.isBefore(d2))
-                  d2=d;
-                break;
-              }
-          }
-          if (d2!=null && d2.isBefore(d1))
-            d2=d1;
-        }
-      }
-      for (Map.Entry<String, ProcessThread> e:process.threads.entrySet()) {
-        Actor actor=gProc.actors.get(e.getKey());
-        if (GlobalProcess.isPaperChairRole(actor.generalRole) ||
-            GlobalProcess.isPCMemberRole(e.getValue().role)) {
-          ProcessThread pcMemberThread=e.getValue();
-          //find assignment tasks
-          for (TaskInstance task: pcMemberThread.tasks)
-            if ((task.actionType.toLowerCase().contains("assign") ||
-                task.actionType.toLowerCase().contains("emails invitation")) &&
-                task.actorsInvolved.size()>1) {
-              task.isDelayed=task.actual.start.toLocalDate().isAfter(phase.endDate);
-            }
-        }
-      }
-      return (d2!=null)?d2:process.getProcessLifetime().end.toLocalDate();
-    }
-    else
-    if (phase.name.equalsIgnoreCase("Reviewing")) {
-      // find when at least 4 actors, including 2 PC members and 2 externals, provided their complete reviews
-      LocalDate dLast=null;
-      int nReviewsDone=0;
-      for (ProcessThread th:process.threads.values())
-        if (!GlobalProcess.isPaperChairRole(th.role)) {
-          boolean completed=false;
-          for (TaskInstance task: th.tasks)
-            if (task.actionType.toLowerCase().endsWith("review")) {
-              completed=task.status!=null && task.status.equalsIgnoreCase("complete");
-              LocalDate d=task.actual.start.toLocalDate();
-              task.isDelayed=d.isAfter(phase.endDate);
-              if (completed) {
-                if (dLast==null || dLast.isBefore(d))
-                  dLast=d;
-                break;
-              }
-            }
-          if (completed) ++nReviewsDone;
-        }
-      // check all reviewing tasks for being delayed
-      Phase decision1Phase=gProc.phases.get("Round 1 Decision"),
-          revPhase=gProc.phases.get("Revision Submission"),
-          finalPhase=gProc.phases.get("Final Decision");
-      for (ProcessThread th:process.threads.values())
-        if (!GlobalProcess.isPaperChairRole(th.role))
-          for (TaskInstance task: th.tasks)
-            if (task.actionType.toLowerCase().endsWith("review")) {
-              LocalDate d=task.actual.start.toLocalDate();
-              task.isDelayed=!d.isBefore(decision1Phase.startDate) &&
-                  (d.isBefore(revPhase.startDate) || !d.isBefore(finalPhase.startDate));
-            }
-
-      return (nReviewsDone>=4)?dLast:process.getProcessLifetime().end.toLocalDate();
-    }
-    else
-    if (phase.name.equalsIgnoreCase("Discussion")) {
-      // find when at least 3 actors, including 2 PC members and at least 1 external,
-      // added their comments to discussion
-      LocalDate dLast=null, dSummary=null, dDecision=null;
-      int nActorsInvolved=0;
-      for (ProcessThread th:process.threads.values())
-        if (!GlobalProcess.isPaperChairRole(th.role)) {
-          boolean commented=false;
-          for (TaskInstance task: th.tasks)
-            if (task.actionType.toLowerCase().contains("comment")) {
-              LocalDate d=task.actual.start.toLocalDate();
-              task.isDelayed=d.isAfter(phase.endDate);
-              if (!commented) {
-                commented=true;
-                if (dLast==null || dLast.isBefore(d))
-                  dLast=d;
-              }
-            }
-            else
-              if (dSummary==null && commented && GlobalProcess.isPCMemberRole(th.role) &&
-                  task.actionType.toLowerCase().endsWith("review") &&
-                  task.actual.start.toLocalDate().isAfter(phase.endDate) &&
-                  task.status!=null && task.status.equalsIgnoreCase("complete")) {
-                dSummary = task.actual.start.toLocalDate();
-                break;
-              }
-          if (commented)
-            ++nActorsInvolved;
-        }
-        if (nActorsInvolved<3 && dSummary==null) {
-          Phase decisionPhase=gProc.phases.get("Round 1 Decision");
-          if (decisionPhase==null)
-            decisionPhase=gProc.phases.get("Revision Submission");
-          if (decisionPhase!=null) {
-            for (ProcessThread th : process.threads.values())
-              if (GlobalProcess.isPaperChairRole(th.role)) {
-                for (TaskInstance task : th.tasks)
-                  if (task.actionType.toLowerCase().contains("decision") &&
-                      task.actual.start.toLocalDate().isBefore(decisionPhase.endDate)) {
-                    if (dDecision==null || dDecision.isAfter(task.actual.start.toLocalDate()))
-                      dDecision=task.actual.start.toLocalDate();
-                    break;
-                  }
-              }
-          }
-        }
-      return (nActorsInvolved>=3)?dLast:(dSummary!=null)?dSummary:
-          (dDecision!=null)?dDecision:process.getProcessLifetime().end.toLocalDate();
-    }
-    else
-    if (phase.name.equalsIgnoreCase("Review Summarization")) {
-      LocalDate dSum=null;
-      Phase decisionPhase=gProc.phases.get("Round 1 Decision");
-      for (ProcessThread th:process.threads.values())
-        if (GlobalProcess.isPCMemberRole(th.role)) {
-          boolean discussed=false;
-          for (TaskInstance task : th.tasks) {
-            if (discussed && task.actionType.toLowerCase().endsWith("review") &&
-                task.status != null && task.status.equalsIgnoreCase("complete") &&
-                task.actual.start.toLocalDate().isBefore(decisionPhase.endDate)) {
-              if (dSum == null || dSum.isBefore(task.actual.start.toLocalDate()))
-                dSum = task.actual.start.toLocalDate();
-              task.isDelayed = task.actual.start.toLocalDate().isAfter(phase.endDate);
-            } else
-              discussed = discussed || task.actionType.toLowerCase().contains("comment");
-          }
-        }
-      if (dSum!=null)
-        return dSum;
-      for (ProcessThread th : process.threads.values())
-        if (GlobalProcess.isPaperChairRole(th.role)) {
-          for (TaskInstance task : th.tasks)
-            if (task.actionType.toLowerCase().contains("decision") &&
-                task.actual.start.toLocalDate().isBefore(decisionPhase.endDate)) {
-              return task.actual.start.toLocalDate();
-            }
-        }
-      return process.getProcessLifetime().end.toLocalDate();
-    }
-    else
-    if (phase.name.equalsIgnoreCase("Round 1 Decision")) {
-      Phase finalPhase=gProc.phases.get("Final Decision");
-      LocalDate d=null;
-      for (ProcessThread th:process.threads.values())
-        if (GlobalProcess.isPaperChairRole(th.role)) {
-          for (TaskInstance task : th.tasks)
-            if (task.actionType.toLowerCase().contains("decision") &&
-                task.actual.start.toLocalDate().isBefore(finalPhase.startDate)) {
-              task.isDelayed=task.actual.start.toLocalDate().isAfter(phase.endDate);
-              if (d==null || d.isAfter(task.actual.start.toLocalDate()) )
-                d=task.actual.start.toLocalDate();
-            }
-        }
-      if (d!=null)
-        return d;
-      return process.getProcessLifetime().end.toLocalDate();
-    }
-    else
-    if (phase.name.equalsIgnoreCase("Recommendation Update")) {
-      Phase revPhase=gProc.phases.get("Revision Submission");
-      LocalDate d=null;
-      for (ProcessThread th:process.threads.values())
-        if (GlobalProcess.isPCMemberRole(th.role)) {
-          for (TaskInstance task : th.tasks) {
-            if (task.actionType.toLowerCase().endsWith("review") &&
-                task.status != null && task.status.equalsIgnoreCase("complete") &&
-                task.actual.start.toLocalDate().isAfter(revPhase.endDate)) {
-              task.isDelayed = task.actual.start.toLocalDate().isAfter(phase.endDate);
-              if (d==null || d.isAfter(task.actual.start.toLocalDate()))
-                d=task.actual.start.toLocalDate();
-            }
-          }
-        }
-      if (d!=null)
-        return d;
-      return process.getProcessLifetime().end.toLocalDate();
-    }
-    else
-    if (phase.name.equalsIgnoreCase("Final Decision")) {
-      LocalDate d=null;
-      for (ProcessThread th:process.threads.values())
-        if (GlobalProcess.isPaperChairRole(th.role)) {
-          for (TaskInstance task : th.tasks)
-            if (task.actionType.toLowerCase().contains("decision") &&
-                !task.actual.start.toLocalDate().isBefore(phase.startDate)) {
-              task.isDelayed=task.actual.start.toLocalDate().isAfter(phase.endDate);
-              if (d==null) d=task.actual.start.toLocalDate();
-            }
-        }
-      if (d!=null)
-        return d;
-      return process.getProcessLifetime().end.toLocalDate();
-    }
-    return null;
+    gProc.getSymbols(); // the codes in the model must refer to the symbol table of gProc
+    PhaseRule rule=PhaseRules.makeRule(phase,this,
+        (ruleDefinitions==null)?null:ruleDefinitions.get(phase.name));
+    if (rule==null)
+      return null;
+    return new PhaseEvaluator(gProc,new PhaseRule[]{rule}).evaluate(process)[0];
   }
 }
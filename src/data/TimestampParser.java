@@ -0,0 +1,118 @@
+package data;
+
+/**
+ * Decodes timestamps of the fixed layouts used in the logs (see LogLoader.dtFormatters
+ * and LogLoader.dateFormatters) directly from the characters into the number of seconds
+ * since 1970-01-01T00:00 (UTC), without creating intermediate strings or objects
+ * and without exceptions. The date and the time may be separated by a space or by 'T'.
+ * Strings that do not strictly match the layout are reported as INVALID,
+ * and the caller may then try the general DateTimeFormatter.
+ */
+
+public class TimestampParser {
+  // Supported layouts
+  public static final int YMD=0, YMD_HMS=1, YMD_HM=2, DMY_HMS=3, DMY_HM=4;
+  public static final int N_LAYOUTS=5;
+  // Lengths of the strings in the respective layouts
+  private static final int LENGTHS[]={10,19,16,19,16};
+
+  public static final long INVALID=Long.MIN_VALUE;
+
+  public static long parseEpochSecond(CharSequence s, int layout) {
+    return (s==null)?INVALID:parseEpochSecond(s,0,s.length(),layout);
+  }
+
+  /**
+   * Decodes the characters from position 'from' (inclusive) to position 'to' (exclusive)
+   * according to the layout; leading and trailing whitespace is ignored.
+   */
+  public static long parseEpochSecond(CharSequence s, int from, int to, int layout) {
+    if (s==null || layout<0 || layout>=N_LAYOUTS)
+      return INVALID;
+    while (from<to && s.charAt(from)<=' ')
+      ++from;
+    while (to>from && s.charAt(to-1)<=' ')
+      --to;
+    if (to-from!=LENGTHS[layout])
+      return INVALID;
+
+    int year, month, day, dateLen=10;
+    if (layout==DMY_HMS || layout==DMY_HM) {
+      if (s.charAt(from+2)!='-' || s.charAt(from+5)!='-')
+        return INVALID;
+      day=digits(s,from,2);
+      month=digits(s,from+3,2);
+      year=digits(s,from+6,4);
+    }
+    else {
+      if (s.charAt(from+4)!='-' || s.charAt(from+7)!='-')
+        return INVALID;
+      year=digits(s,from,4);
+      month=digits(s,from+5,2);
+      day=digits(s,from+8,2);
+    }
+    // year 0000 is rejected, as by the pattern "yyyy" (year of era) of the formatters
+    if (year<1 || month<1 || month>12 || day<1 || day>getMonthLength(year,month))
+      return INVALID;
+
+    int hour=0, minute=0, second=0;
+    if (layout!=YMD) {
+      int p=from+dateLen;
+      char sep=s.charAt(p);
+      if ((sep!=' ' && sep!='T') || s.charAt(p+3)!=':')
+        return INVALID;
+      hour=digits(s,p+1,2);
+      minute=digits(s,p+4,2);
+      if (layout==YMD_HMS || layout==DMY_HMS) {
+        if (s.charAt(p+6)!=':')
+          return INVALID;
+        second=digits(s,p+7,2);
+      }
+      if (hour<0 || hour>23 || minute<0 || minute>59 || second<0 || second>59)
+        return INVALID;
+    }
+    return getEpochDay(year,month,day)*86400L+hour*3600+minute*60+second;
+  }
+
+  /**
+   * Finds a layout matching the string, or returns -1.
+   */
+  public static int detectLayout(CharSequence s) {
+    for (int layout=0; layout<N_LAYOUTS; layout++)
+      if (parseEpochSecond(s,layout)!=INVALID)
+        return layout;
+    return -1;
+  }
+
+  /**
+   * Reads the given number of decimal digits; returns -1 if a character is not a digit.
+   */
+  private static int digits(CharSequence s, int from, int n) {
+    int v=0;
+    for (int i=from; i<from+n; i++) {
+      int d=s.charAt(i)-'0';
+      if (d<0 || d>9)
+        return -1;
+      v=v*10+d;
+    }
+    return v;
+  }
+
+  private static int getMonthLength(int year, int month) {
+    if (month==2)
+      return ((year%4==0 && year%100!=0) || year%400==0)?29:28;
+    return (month==4 || month==6 || month==9 || month==11)?30:31;
+  }
+
+  /**
+   * Number of days since 1970-01-01 in the proleptic Gregorian calendar.
+   */
+  private static long getEpochDay(int year, int month, int day) {
+    long y=(month<=2)?year-1:year;
+    long era=((y>=0)?y:y-399)/400;
+    long yoe=y-era*400;
+    long doy=(153*(month+((month>2)?-3:9))+2)/5+day-1;
+    long doe=yoe*365+yoe/4-yoe/100+doy;
+    return era*146097+doe-719468;
+  }
+}
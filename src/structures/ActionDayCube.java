@@ -0,0 +1,274 @@
+package structures;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Counts of the tasks by action types and days in a dense table, with the tasks of each
+ * (action type, day) cell stored consecutively in shared arrays (compressed sparse rows),
+ * so that the histograms of all action types are made from one structure without maps of boxed numbers.
+ * A task belongs to the day when it started. The action types are in the alphabetical order;
+ * the tasks of a cell are in the order of the processes, threads and tasks.
+ * Only the days with tasks have columns, in the chronological order, so that the size of the
+ * table does not depend on the time span of the log (e.g. a single task with a wrong year).
+ * The cube is built in parallel over groups of processes and is not changed afterwards;
+ * after the data have changed, a new cube is built (see GlobalProcess.getActionDayCube).
+ */
+
+public class ActionDayCube {
+  // Smallest number of processes handled by one parallel task
+  public static int MIN_PROCESSES_PER_CHUNK=256;
+
+  private String actions[]=new String[0];
+  private Map<String,Integer> actionIndex=new HashMap<>();
+  // The days with tasks (as epoch days) in the chronological order
+  private long days[]=new long[0];
+  private int nDays=0;
+  // counts[action][day]
+  private int counts[][]=new int[0][];
+  // The tasks of the cell (a,d) are at the positions from cellStart[a*nDays+d] to cellStart[a*nDays+d+1]-1
+  private int cellStart[]={0};
+  private TaskInstance cellTasks[]=new TaskInstance[0];
+  private ProcessInstance cellProcesses[]=new ProcessInstance[0];
+
+  /**
+   * The tasks of a group of processes with their days and action types, in the order of traversal.
+   */
+  private static class Chunk {
+    int from, to, n=0;
+    long days[]=new long[64];
+    String acts[]=new String[64];
+    int cellCounts[]=null, cellPos[]=null;
+    // The different days of the tasks in the chronological order
+    long dayList[]=null;
+
+    void add(long day, String action) {
+      if (n>=days.length) {
+        days=Arrays.copyOf(days,n*2);
+        acts=Arrays.copyOf(acts,n*2);
+      }
+      days[n]=day;
+      acts[n++]=action;
+    }
+  }
+
+  private static boolean isCounted(TaskInstance t) {
+    return t.actionType!=null && t.actual!=null && t.actual.start!=null;
+  }
+
+  public static ActionDayCube build(Collection<ProcessInstance> pList) {
+    ActionDayCube cube=new ActionDayCube();
+    if (pList==null || pList.isEmpty())
+      return cube;
+    ProcessInstance pArr[]=pList.toArray(new ProcessInstance[0]);
+    int nChunks=Math.max(1,Math.min(Runtime.getRuntime().availableProcessors(),
+        (pArr.length+MIN_PROCESSES_PER_CHUNK-1)/MIN_PROCESSES_PER_CHUNK));
+    Chunk chunks[]=new Chunk[nChunks];
+    for (int c=0; c<nChunks; c++) {
+      chunks[c]=new Chunk();
+      chunks[c].from=(int)((long)pArr.length*c/nChunks);
+      chunks[c].to=(int)((long)pArr.length*(c+1)/nChunks);
+    }
+
+    // 1: the days and action types of the tasks
+    IntStream.range(0,nChunks).parallel().forEach(c -> {
+      Chunk ch=chunks[c];
+      for (int p=ch.from; p<ch.to; p++)
+        for (ProcessThread th:pArr[p].threads.values())
+          for (TaskInstance t:th.tasks)
+            if (isCounted(t))
+              ch.add(t.actual.start.toLocalDate().toEpochDay(),t.actionType);
+      ch.dayList=getDistinct(Arrays.copyOf(ch.days,ch.n),ch.n);
+    });
+    TreeSet<String> actionSet=new TreeSet<>();
+    int nAllDays=0;
+    for (Chunk ch:chunks) {
+      for (int i=0; i<ch.n; i++)
+        actionSet.add(ch.acts[i]);
+      nAllDays+=ch.dayList.length;
+    }
+    if (actionSet.isEmpty())
+      return cube;
+    cube.actions=actionSet.toArray(new String[0]);
+    for (int a=0; a<cube.actions.length; a++)
+      cube.actionIndex.put(cube.actions[a],a);
+    long allDays[]=new long[nAllDays];
+    nAllDays=0;
+    for (Chunk ch:chunks) {
+      System.arraycopy(ch.dayList,0,allDays,nAllDays,ch.dayList.length);
+      nAllDays+=ch.dayList.length;
+      ch.dayList=null;
+    }
+    cube.days=getDistinct(allDays,nAllDays);
+    cube.nDays=cube.days.length;
+    int nCells=cube.actions.length*cube.nDays;
+
+    // 2: the counts of the cells in each chunk
+    IntStream.range(0,nChunks).parallel().forEach(c -> {
+      Chunk ch=chunks[c];
+      ch.cellCounts=new int[nCells];
+      for (int i=0; i<ch.n; i++)
+        ++ch.cellCounts[cube.getCell(cube.actionIndex.get(ch.acts[i]),Arrays.binarySearch(cube.days,ch.days[i]))];
+    });
+    // the positions of the cells and, within a cell, of the parts from the chunks
+    cube.cellStart=new int[nCells+1];
+    int pos=0;
+    for (Chunk ch:chunks)
+      ch.cellPos=new int[nCells];
+    for (int cell=0; cell<nCells; cell++) {
+      cube.cellStart[cell]=pos;
+      for (Chunk ch:chunks) {
+        ch.cellPos[cell]=pos;
+        pos+=ch.cellCounts[cell];
+      }
+    }
+    cube.cellStart[nCells]=pos;
+    cube.counts=new int[cube.actions.length][cube.nDays];
+    for (int a=0; a<cube.actions.length; a++)
+      for (int d=0; d<cube.nDays; d++)
+        cube.counts[a][d]=cube.cellStart[cube.getCell(a,d)+1]-cube.cellStart[cube.getCell(a,d)];
+
+    // 3: the tasks are put in their places
+    cube.cellTasks=new TaskInstance[pos];
+    cube.cellProcesses=new ProcessInstance[pos];
+    IntStream.range(0,nChunks).parallel().forEach(c -> {
+      Chunk ch=chunks[c];
+      int i=0;
+      for (int p=ch.from; p<ch.to; p++)
+        for (ProcessThread th:pArr[p].threads.values())
+          for (TaskInstance t:th.tasks)
+            if (isCounted(t)) {
+              int k=ch.cellPos[cube.getCell(cube.actionIndex.get(ch.acts[i]),Arrays.binarySearch(cube.days,ch.days[i]))]++;
+              cube.cellTasks[k]=t;
+              cube.cellProcesses[k]=pArr[p];
+              ++i;
+            }
+      ch.days=null; ch.acts=null; ch.cellCounts=null; ch.cellPos=null;
+    });
+    return cube;
+  }
+
+  /**
+   * Sorts the first n values of the array and returns the different ones.
+   */
+  private static long[] getDistinct(long values[], int n) {
+    Arrays.sort(values,0,n);
+    int k=0;
+    for (int i=0; i<n; i++)
+      if (k==0 || values[i]!=values[k-1])
+        values[k++]=values[i];
+    return Arrays.copyOf(values,k);
+  }
+
+  private int getCell(int action, int day) {
+    return action*nDays+day;
+  }
+
+  public int getNActions() {
+    return actions.length;
+  }
+
+  public String getAction(int a) {
+    return actions[a];
+  }
+
+  /**
+   * Returns the index of the action type or -1 if it has no tasks.
+   */
+  public int getActionIndex(String action) {
+    Integer idx=(action==null)?null:actionIndex.get(action);
+    return (idx==null)?-1:idx;
+  }
+
+  public int getNDays() {
+    return nDays;
+  }
+
+  public LocalDate getDay(int d) {
+    return LocalDate.ofEpochDay(days[d]);
+  }
+
+  /**
+   * Returns the index of the day or -1 if there are no tasks on this day.
+   */
+  public int getDayIndex(LocalDate date) {
+    if (date==null)
+      return -1;
+    int d=Arrays.binarySearch(days,date.toEpochDay());
+    return (d<0)?-1:d;
+  }
+
+  /**
+   * Returns the index of the first day with tasks on or after the date (nDays if there is none).
+   */
+  public int getFirstDayFrom(LocalDate date) {
+    int d=Arrays.binarySearch(days,date.toEpochDay());
+    return (d<0)?-d-1:d;
+  }
+
+  public int getCount(int action, int day) {
+    return counts[action][day];
+  }
+
+  public int getMaxCount(int action) {
+    int max=0;
+    for (int c:counts[action])
+      max=Math.max(max,c);
+    return max;
+  }
+
+  /**
+   * The index of the first day with the maximal count of the action type.
+   */
+  public int getPeakDay(int action) {
+    int peak=0;
+    for (int d=1; d<nDays; d++)
+      if (counts[action][d]>counts[action][peak])
+        peak=d;
+    return peak;
+  }
+
+  public int getCellSize(int action, int day) {
+    return counts[action][day];
+  }
+
+  public TaskInstance getTask(int action, int day, int k) {
+    return cellTasks[cellStart[getCell(action,day)]+k];
+  }
+
+  public ProcessInstance getProcess(int action, int day, int k) {
+    return cellProcesses[cellStart[getCell(action,day)]+k];
+  }
+
+  public List<TaskInstance> getTasks(int action, int day) {
+    int cell=getCell(action,day);
+    return Arrays.asList(cellTasks).subList(cellStart[cell],cellStart[cell+1]);
+  }
+
+  /**
+   * Returns the total count of the action type over the days with the indexes from d1 to d2 (inclusive).
+   */
+  public int getCount(int action, int d1, int d2) {
+    int sum=0;
+    for (int d=Math.max(0,d1); d<=Math.min(nDays-1,d2); d++)
+      sum+=counts[action][d];
+    return sum;
+  }
+
+  /**
+   * Returns the counts in the same form as GlobalProcess.getActionCountsByDay
+   * (only the days with tasks are included).
+   */
+  public Map<String, Map<LocalDate, Integer>> toCountMap() {
+    Map<String, Map<LocalDate, Integer>> map=new TreeMap<>();
+    for (int a=0; a<actions.length; a++) {
+      Map<LocalDate, Integer> byDay=new TreeMap<>();
+      for (int d=0; d<nDays; d++)
+        if (counts[a][d]>0)
+          byDay.put(getDay(d),counts[a][d]);
+      map.put(actions[a],byDay);
+    }
+    return map;
+  }
+}
@@ -1,10 +1,70 @@
 package structures;
 
 public class ActionType {
+  // Semantic classes of actions, determined from the type names
+  public static final int ASSIGNMENT=1, // "assign..."
+      ASSIGNMENT_AS_ROLE=2, // "... as <role>"
+      CLEAR_ALL=4, // "... clear all ..."
+      ROLE_CHANGE=8, // "changes role"
+      REVIEW_RELATED=16, // "...review..."
+      REVIEW=32, // "... review"
+      COMMENT=64,
+      DECISION=128,
+      ACCEPT=256,
+      DECLINE=512, // "declines"
+      INVITATION=1024; // "emails invitation"
+
   public String typeName=null; //e.g. "accepts invitation", "updates review", "sets decision", ...
   public String phaseName=null; //e.g. "Assignment to External Reviewers", "Reviewing", "Discussion"
   public String actorRole=null; //e.g. "PC Member", "External Reviewer", "PC Member"
   public String targetType=null; //e.g. ""Actor", "Status", "Outcome"
   public String targetRole=null; //in case of targetType="Actor" it is the role of the target actor
   public String code=null;
+
+  private int flags=-1;
+  private String assignedRole=null;
+
+  /**
+   * Returns the semantic classes of this action type as a combination of the bits defined above;
+   * computed once from the type name.
+   */
+  public int getFlags() {
+    if (flags<0)
+      flags=classify(typeName);
+    return flags;
+  }
+
+  public boolean is(int flag) {
+    return (getFlags() & flag)!=0;
+  }
+
+  /**
+   * For an action like "assigns as <role>", returns the role; otherwise returns null.
+   */
+  public String getAssignedRole() {
+    if (assignedRole==null && is(ASSIGNMENT_AS_ROLE)) {
+      int idx=typeName.toLowerCase().indexOf(" as ");
+      assignedRole=typeName.substring(idx+4).trim();
+    }
+    return assignedRole;
+  }
+
+  public static int classify(String typeName) {
+    if (typeName==null)
+      return 0;
+    String name=typeName.toLowerCase();
+    int f=0;
+    if (name.contains("assign")) f|=ASSIGNMENT;
+    if (name.contains(" as ")) f|=ASSIGNMENT_AS_ROLE;
+    if (name.contains("clear all")) f|=CLEAR_ALL;
+    if (name.contains("changes role")) f|=ROLE_CHANGE;
+    if (name.contains("review")) f|=REVIEW_RELATED;
+    if (name.endsWith("review")) f|=REVIEW;
+    if (name.contains("comment")) f|=COMMENT;
+    if (name.contains("decision")) f|=DECISION;
+    if (name.contains("accept")) f|=ACCEPT;
+    if (name.contains("declines")) f|=DECLINE;
+    if (name.contains("emails invitation")) f|=INVITATION;
+    return f;
+  }
 }
@@ -15,6 +15,8 @@ public class Actor implements Comparable<Actor>{
   
   public String id;
   public String generalRole=null;
+  // Codes of the id and the general role in the SymbolTable
+  public int idCode=-1, generalRoleCode=-1;
 
   // Assignments of actor roles in different process instances; key: ID of a process instance; value: role
   public Map<String,String> processRoleAssignments=new LinkedHashMap<>();
@@ -0,0 +1,83 @@
+package structures;
+
+import java.util.*;
+
+/**
+ * Index of the actors for the views: the actors grouped by their general roles in the order
+ * of the list of the roles and sorted within the groups (see Actor.compareTo), and for each actor,
+ * the processes and threads where the actor is involved, in the order of the processes.
+ * The index is built for the current state of the model and must be rebuilt when it changes
+ * (see GlobalProcess.getActorIndex).
+ */
+
+public class ActorIndex {
+  /**
+   * A thread of an actor in a process.
+   */
+  public static class Involvement {
+    public ProcessInstance process;
+    public ProcessThread thread;
+
+    public Involvement(ProcessInstance process, ProcessThread thread) {
+      this.process=process; this.thread=thread;
+    }
+  }
+
+  private List<Actor> sortedActors=null;
+  private Map<String,List<Involvement>> involvements=new HashMap<>();
+
+  public static ActorIndex build(GlobalProcess gProc) {
+    ActorIndex index=new ActorIndex();
+    List<Actor> sorted=(gProc.actors==null)?null:sortByRoles(gProc.actors.values(),gProc.actorRoles);
+    index.sortedActors=(sorted==null)?Collections.emptyList():Collections.unmodifiableList(sorted);
+    if (gProc.processes!=null)
+      for (ProcessInstance p:gProc.processes)
+        for (Map.Entry<String,ProcessThread> e:p.threads.entrySet())
+          index.involvements.computeIfAbsent(e.getKey(),k -> new ArrayList<>()).add(new Involvement(p,e.getValue()));
+    return index;
+  }
+
+  /**
+   * Sorts the actors by groups of general roles in the order of the given roles;
+   * the actors whose roles are not in the list are omitted. If there are less than two roles,
+   * all actors are sorted together. Returns null if there are no actors.
+   */
+  public static List<Actor> sortByRoles(Collection<Actor> actors, List<String> roles) {
+    if (actors==null || actors.isEmpty())
+      return null;
+    if (roles==null || roles.size()<2) {
+      ArrayList<Actor> sortedActors = new ArrayList<Actor>(actors);
+      Collections.sort(sortedActors);
+      return sortedActors;
+    }
+    Map<String,List<Actor>> byRole=new HashMap<>();
+    for (Actor actor:actors)
+      if (actor.generalRole!=null)
+        byRole.computeIfAbsent(actor.generalRole,k -> new ArrayList<>()).add(actor);
+    ArrayList<Actor> sortedActors = new ArrayList<Actor>(actors.size());
+    for (String role:roles) {
+      // a role repeated in the list gets no actors the second time
+      List<Actor> roleActors=byRole.remove(role);
+      if (roleActors==null)
+        continue;
+      Collections.sort(roleActors);
+      sortedActors.addAll(roleActors);
+    }
+    return sortedActors;
+  }
+
+  /**
+   * All actors of the model grouped by roles and sorted; the list cannot be modified.
+   */
+  public List<Actor> getSortedActors() {
+    return sortedActors;
+  }
+
+  /**
+   * Returns the threads of the actor in the order of the processes; the list is empty if there are none.
+   */
+  public List<Involvement> getInvolvements(String actorId) {
+    List<Involvement> list=(actorId==null)?null:involvements.get(actorId);
+    return (list==null)?Collections.emptyList():list;
+  }
+}
@@ -3,6 +3,7 @@ package structures;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Global Process Model
@@ -16,71 +17,201 @@ public class GlobalProcess {
 
   public Collection<ProcessInstance> processes;
 
+  // Dictionary of action types, roles, statuses, outcomes and actor IDs
+  public SymbolTable symbols=null;
+
+  // Classes of roles, see the methods is...Role below
+  public static final int PAPER_CHAIR_ROLE=1, PRIMARY_ROLE=2, SECONDARY_ROLE=4, PC_MEMBER_ROLE=8,
+      EXTERNAL_ROLE=16;
+  // Classes of the roles by their codes in the symbol table
+  private int roleClasses[]=null;
+  // Semantic classes of the action types (see ActionType) by their codes in the symbol table
+  private int actionFlags[]=null;
+
+  // Incremented each time the data change, e.g. when records are appended to the log
+  private long dataVersion=0;
+  private List<Runnable> changeListeners=new ArrayList<>();
+  private List<Consumer<List<PhaseChange>>> phaseChangeListeners=new ArrayList<>();
+
+  // Index of the tasks by time, built on demand for the current data version
+  private TaskTimeIndex taskTimeIndex=null;
+  private long taskTimeIndexVersion=-1;
+  // Counts and tasks by action types and days, built on demand for the current data version
+  private ActionDayCube actionDayCube=null;
+  private long actionDayCubeVersion=-1;
+  // Actors sorted by roles and their threads, built on demand for the current data version
+  private ActorIndex actorIndex=null;
+  private long actorIndexVersion=-1;
+  // Phases ordered by dates, made for the current map of the phases
+  private PhaseCalendar phaseCalendar=null;
+  private Map<String, Phase> calendarPhases=null;
+  private int calendarSize=0;
+
   public Collection<ProcessInstance> getProcesses() {
     return processes;
   }
 
-  public List<Actor> getActorsSorted(Collection<Actor> actors) {
-    if (actors==null || actors.isEmpty())
-      return null;
-    if (actorRoles==null || actorRoles.size()<2) {
-      ArrayList<Actor> sortedActors = new ArrayList<Actor>(actors);
-      Collections.sort(sortedActors);
-      return sortedActors;
+  public long getDataVersion() {
+    return dataVersion;
+  }
+
+  public void addChangeListener(Runnable r) { changeListeners.add(r); }
+
+  public void removeChangeListener(Runnable r) { changeListeners.remove(r); }
+
+  /**
+   * Must be called after the processes have been changed; notifies the listeners,
+   * e.g. the views that need to be updated.
+   */
+  public void notifyDataChanged() {
+    ++dataVersion;
+    for (Runnable r:changeListeners)
+      r.run();
+  }
+
+  public void addPhaseChangeListener(Consumer<List<PhaseChange>> l) { phaseChangeListeners.add(l); }
+
+  public void removePhaseChangeListener(Consumer<List<PhaseChange>> l) { phaseChangeListeners.remove(l); }
+
+  /**
+   * Gives the changes of the phase completeness dates of the processes to the listeners,
+   * e.g. the views and exporters that are updated incrementally; called after notifyDataChanged.
+   */
+  public void notifyPhaseChanges(List<PhaseChange> changes) {
+    if (changes==null || changes.isEmpty())
+      return;
+    for (Consumer<List<PhaseChange>> l:phaseChangeListeners)
+      l.accept(changes);
+  }
+
+  /**
+   * Returns the symbol table of the model; builds it if it has not been provided by the loader.
+   */
+  public SymbolTable getSymbols() {
+    if (symbols==null)
+      symbols=SymbolTable.build(this);
+    return symbols;
+  }
+
+  /**
+   * Returns the index of the tasks by time; it is rebuilt when the data have changed.
+   */
+  public TaskTimeIndex getTaskTimeIndex() {
+    if (taskTimeIndex==null || taskTimeIndexVersion!=dataVersion) {
+      taskTimeIndex=TaskTimeIndex.build(processes);
+      taskTimeIndexVersion=dataVersion;
+    }
+    return taskTimeIndex;
+  }
+
+  /**
+   * Returns the counts and tasks by action types and days; they are made anew when the data have changed.
+   */
+  public ActionDayCube getActionDayCube() {
+    if (actionDayCube==null || actionDayCubeVersion!=dataVersion) {
+      actionDayCube=ActionDayCube.build(processes);
+      actionDayCubeVersion=dataVersion;
+    }
+    return actionDayCube;
+  }
+
+  /**
+   * Returns the index of the actors; it is rebuilt when the data have changed.
+   */
+  public ActorIndex getActorIndex() {
+    if (actorIndex==null || actorIndexVersion!=dataVersion) {
+      actorIndex=ActorIndex.build(this);
+      actorIndexVersion=dataVersion;
+    }
+    return actorIndex;
+  }
+
+  public static int getRoleClasses(String role) {
+    if (role==null)
+      return 0;
+    int classes=0;
+    if (isPaperChairRole(role)) classes|=PAPER_CHAIR_ROLE;
+    if (isPrimaryRole(role)) classes|=PRIMARY_ROLE;
+    if (isSecondaryRole(role)) classes|=SECONDARY_ROLE;
+    if (isPCMemberRole(role)) classes|=PC_MEMBER_ROLE;
+    if (isExternalRole(role)) classes|=EXTERNAL_ROLE;
+    return classes;
+  }
+
+  /**
+   * Returns the classes of the role with the given code as a combination of the ..._ROLE bits.
+   */
+  public int getRoleClasses(int roleCode) {
+    if (roleCode<0)
+      return 0;
+    if (roleClasses==null || roleCode>=roleClasses.length) {
+      SymbolTable st=getSymbols();
+      int classes[]=new int[Math.max(roleCode+1,st.size(SymbolTable.ROLE))];
+      for (int i=0; i<classes.length; i++)
+        classes[i]=getRoleClasses(st.decode(SymbolTable.ROLE,i));
+      roleClasses=classes;
     }
-    ArrayList<Actor> sortedActors = new ArrayList<Actor>(actors.size());
-    ArrayList<Actor> roleActors=new ArrayList<Actor>(actors.size());
-    for (int rIdx=0; rIdx<actorRoles.size(); rIdx++) {
-      roleActors.clear();
-      String role=actorRoles.get(rIdx);
-      for (Actor actor : actors) {
-        if (role.equals(actor.generalRole) && !sortedActors.contains(actor))
-          roleActors.add(actor);
+    return roleClasses[roleCode];
+  }
+
+  public boolean hasRoleClass(int roleCode, int roleClass) {
+    return (getRoleClasses(roleCode) & roleClass)!=0;
+  }
+
+  /**
+   * Returns the semantic classes of the action type with the given code (see ActionType.getFlags).
+   */
+  public int getActionFlags(int actionCode) {
+    if (actionCode<0)
+      return 0;
+    if (actionFlags==null || actionCode>=actionFlags.length) {
+      SymbolTable st=getSymbols();
+      int flags[]=new int[Math.max(actionCode+1,st.size(SymbolTable.ACTION))];
+      for (int i=0; i<flags.length; i++) {
+        String name=st.decode(SymbolTable.ACTION,i);
+        ActionType aType=(actionTypes==null || name==null)?null:actionTypes.get(name);
+        flags[i]=(aType!=null)?aType.getFlags():ActionType.classify(name);
       }
-      Collections.sort(roleActors);
-      sortedActors.addAll(roleActors);
+      actionFlags=flags;
     }
-    return sortedActors;
+    return actionFlags[actionCode];
+  }
+
+  public List<Actor> getActorsSorted(Collection<Actor> actors) {
+    return ActorIndex.sortByRoles(actors,actorRoles);
   }
 
+  /**
+   * Returns the calendar of the phases; it is made anew when the map of the phases has been replaced or resized.
+   */
+  public PhaseCalendar getPhaseCalendar() {
+    if (phaseCalendar==null || calendarPhases!=phases || (phases!=null && calendarSize!=phases.size())) {
+      phaseCalendar=new PhaseCalendar((phases==null)?null:phases.values());
+      calendarPhases=phases;
+      calendarSize=(phases==null)?0:phases.size();
+    }
+    return phaseCalendar;
+  }
+
+  /**
+   * Returns the phases ordered by their start dates; the list cannot be modified.
+   */
   public List<Phase> getListOfPhases() {
     if (phases==null || phases.isEmpty())
       return null;
-    ArrayList<Phase> phaseList=new ArrayList<Phase>(phases.size());
-    for (Phase phase:phases.values()) {
-      boolean inserted=false;
-      for (int i=0; i<phaseList.size() && !inserted; i++)
-        if (phase.startDate.compareTo(phaseList.get(i).startDate)<0) {
-          phaseList.add(i,phase);
-          inserted=true;
-        }
-      if (!inserted)
-        phaseList.add(phase);
-    }
-    return phaseList;
+    return getPhaseCalendar().getPhases();
   }
 
   public Phase getPhaseForDate(LocalDate d) {
     if (phases==null || d==null)
       return null;
-    for (Phase phase:phases.values())
-      if (phase.contains(d))
-        return phase;
-    return null;
+    return getPhaseCalendar().getPhaseForDate(d);
   }
 
   public LocalDate[] getPhaseDatesRange() {
     if (phases==null || phases.isEmpty())
       return null;
-    LocalDate d1=null, d2=null;
-    for (Phase phase:phases.values()) {
-      if (d1==null || d1.isAfter(phase.startDate))
-        d1=phase.startDate;
-      if (d2==null || d2.isBefore(phase.endDate))
-        d2=phase.endDate;
-    }
-    LocalDate range[]={d1,d2};
-    return range;
+    return getPhaseCalendar().getDatesRange();
   }
 
   public List<ProcessInstance> getProcessesByEndTimeDescending() {
@@ -116,19 +247,7 @@ public class GlobalProcess {
   }
 
   public Map<String, Map<LocalDate, List<TaskContext>>> getTasksByActionAndDay() {
-    Map<String, Map<LocalDate, List<TaskContext>>> tasksMap = new TreeMap<>();
-    for (ProcessInstance p : processes) {
-      for (Map.Entry<String, ProcessThread> e:p.threads.entrySet()) {
-        ProcessThread th=e.getValue();
-        for (TaskInstance t : th.tasks) {
-          LocalDate date = t.actual.start.toLocalDate();
-          tasksMap.computeIfAbsent(t.actionType, k -> new TreeMap<>())
-              .computeIfAbsent(date, k -> new ArrayList<>())
-              .add(new TaskContext(t,p.id));
-        }
-      }
-    }
-    return tasksMap;
+    return getTaskTimeIndex().getTasksByActionAndDay();
   }
 
   public static boolean isPaperChairRole(String role) {
@@ -0,0 +1,136 @@
+package structures;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Immutable calendar of the phases: the phases ordered by their start dates and a table
+ * giving for each day of the covered period the phase this day belongs to, so that
+ * the phase of a date or a task is found in constant time.
+ * When the phases overlap, a day belongs to the first phase containing it in the original
+ * order of the phases, as in GlobalProcess.getPhaseForDate.
+ * For an unusually long period, the table is not made and the phases are found by binary search
+ * (then, of overlapping phases, the one that started later is found).
+ */
+
+public class PhaseCalendar {
+  // The longest period (in days) for which the table of days is made
+  public static int MAX_TABLE_DAYS=100000;
+
+  private List<Phase> sorted=null;
+  private long firstDay=0, lastDay=-1;
+  private long starts[]=null, ends[]=null;
+  // Index of the phase in the sorted list for each day from firstDay, or -1
+  private int phaseOfDay[]=null;
+
+  public PhaseCalendar(Collection<Phase> phases) {
+    List<Phase> list=new ArrayList<>((phases==null)?0:phases.size());
+    if (phases!=null)
+      list.addAll(phases);
+    // a stable sort keeps the original order of the phases with equal start dates
+    list.sort(Comparator.comparing((Phase p) -> p.startDate));
+    sorted=Collections.unmodifiableList(list);
+    int n=list.size();
+    starts=new long[n];
+    ends=new long[n];
+    if (n==0)
+      return;
+    firstDay=Long.MAX_VALUE;
+    lastDay=Long.MIN_VALUE;
+    for (int i=0; i<n; i++) {
+      starts[i]=list.get(i).startDate.toEpochDay();
+      ends[i]=list.get(i).endDate.toEpochDay();
+      firstDay=Math.min(firstDay,starts[i]);
+      lastDay=Math.max(lastDay,ends[i]);
+    }
+    if (lastDay-firstDay+1>MAX_TABLE_DAYS)
+      return;
+    phaseOfDay=new int[(int)(lastDay-firstDay+1)];
+    Arrays.fill(phaseOfDay,-1);
+    // the phases are laid in the reverse original order, so that the earlier phases win
+    List<Phase> original=new ArrayList<>(phases);
+    Map<Phase,Integer> sortedIdx=new IdentityHashMap<>();
+    for (int i=0; i<n; i++)
+      sortedIdx.put(list.get(i),i);
+    for (int k=original.size()-1; k>=0; k--) {
+      int i=sortedIdx.get(original.get(k));
+      for (long d=starts[i]; d<=ends[i]; d++)
+        phaseOfDay[(int)(d-firstDay)]=i;
+    }
+  }
+
+  /**
+   * The phases in the order of their start dates; the list cannot be modified.
+   */
+  public List<Phase> getPhases() {
+    return sorted;
+  }
+
+  public int size() {
+    return sorted.size();
+  }
+
+  public boolean isEmpty() {
+    return sorted.isEmpty();
+  }
+
+  public Phase getPhase(int idx) {
+    return (idx<0 || idx>=sorted.size())?null:sorted.get(idx);
+  }
+
+  /**
+   * Returns the index (in the order of the start dates) of the phase containing the day
+   * given as the number of days since 1970-01-01, or -1.
+   */
+  public int getPhaseIndex(long epochDay) {
+    if (sorted.isEmpty() || epochDay<firstDay || epochDay>lastDay)
+      return -1;
+    if (phaseOfDay!=null)
+      return phaseOfDay[(int)(epochDay-firstDay)];
+    // the last phase starting not later than the day, then the earlier ones that may still last
+    int low=0, high=starts.length-1;
+    while (low<=high) {
+      int mid=(low+high)>>>1;
+      if (starts[mid]<=epochDay)
+        low=mid+1;
+      else
+        high=mid-1;
+    }
+    for (int i=high; i>=0; i--)
+      if (ends[i]>=epochDay)
+        return i;
+    return -1;
+  }
+
+  public int getPhaseIndex(LocalDate date) {
+    return (date==null)?-1:getPhaseIndex(date.toEpochDay());
+  }
+
+  public int getPhaseIndex(LocalDateTime time) {
+    return (time==null)?-1:getPhaseIndex(time.toLocalDate().toEpochDay());
+  }
+
+  public Phase getPhaseForDate(LocalDate date) {
+    return getPhase(getPhaseIndex(date));
+  }
+
+  /**
+   * Returns the phase of the start of the task, or null.
+   */
+  public Phase getPhaseForTask(TaskInstance task) {
+    if (task==null || task.actual==null)
+      return null;
+    return getPhase(getPhaseIndex(task.actual.start));
+  }
+
+  /**
+   * Returns the first and the last day of all phases, or null if there are no phases.
+   */
+  public LocalDate[] getDatesRange() {
+    if (sorted.isEmpty())
+      return null;
+    LocalDate range[]={LocalDate.ofEpochDay(firstDay),LocalDate.ofEpochDay(lastDay)};
+    return range;
+  }
+}
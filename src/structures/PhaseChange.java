@@ -0,0 +1,48 @@
+package structures;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Change of the completeness date of a phase in a process, e.g. after new records of the log
+ * have been applied; a null date means that the process had (or has) no date for the phase.
+ * The changes are given to the listeners registered in GlobalProcess.addPhaseChangeListener.
+ */
+
+public class PhaseChange {
+  public ProcessInstance process=null;
+  public String phaseName=null;
+  public LocalDate oldDate=null, newDate=null;
+
+  public PhaseChange(ProcessInstance process, String phaseName, LocalDate oldDate, LocalDate newDate) {
+    this.process=process; this.phaseName=phaseName;
+    this.oldDate=oldDate; this.newDate=newDate;
+  }
+
+  public String getProcessId() {
+    return process.id;
+  }
+
+  /**
+   * Adds to the list the changes between the previous and current completeness dates
+   * of the process, in the order of the phases.
+   */
+  public static void addChanges(ProcessInstance process, Map<String, LocalDate> oldDates,
+                                Map<String, LocalDate> newDates, Iterable<Phase> phases,
+                                List<PhaseChange> changes) {
+    if (oldDates==newDates)
+      return;
+    for (Phase phase:phases) {
+      LocalDate d0=(oldDates==null)?null:oldDates.get(phase.name),
+          d1=(newDates==null)?null:newDates.get(phase.name);
+      if (!Objects.equals(d0,d1))
+        changes.add(new PhaseChange(process,phase.name,d0,d1));
+    }
+  }
+
+  public String toString() {
+    return process.id+": "+phaseName+" "+oldDate+" -> "+newDate;
+  }
+}
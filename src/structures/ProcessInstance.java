@@ -14,6 +14,8 @@ public class ProcessInstance {
 
   // Assignments of actor IDs to roles in this process instance
   public Map<String,String> roleAssignments=new LinkedHashMap<>();
+  // The changes of the role assignments over time
+  public RoleHistory roleHistory=new RoleHistory();
 
   // Map of Actor ID to their specific ProcessThread
   public Map<String, ProcessThread> threads = new LinkedHashMap<>();
@@ -21,10 +23,40 @@ public class ProcessInstance {
   // By what date each phase is completed in this process. Key: phase name
   public Map<String, LocalDate> phaseDone=null;
 
+  // Cached lifetime and the number of threads it accounts for (-1 if it must be computed anew)
+  private TimeInterval lifetime=null;
+  private int lifetimeThreadCount=-1;
+
   public ProcessInstance(String id) {
     this.id = id;
   }
 
+  /**
+   * Assigns the role to the actor at the given time, updating both the current assignments and the history.
+   */
+  public void assignRole(String actorId, String role, LocalDateTime time) {
+    roleAssignments.put(actorId,role);
+    if (time!=null)
+      roleHistory.record(actorId,time,role);
+  }
+
+  public void clearRoles(LocalDateTime time) {
+    roleAssignments.clear();
+    if (time!=null)
+      roleHistory.clearAll(time);
+  }
+
+  /**
+   * Returns the role the actor had in this process at the given time, or null if the actor had no role then;
+   * if the history has nothing about the actor (e.g. the roles were assigned without times),
+   * returns the current assignment.
+   */
+  public String getRoleAt(String actorId, LocalDateTime time) {
+    if (roleHistory.getNChanges(actorId)==0)
+      return roleAssignments.get(actorId);
+    return roleHistory.getRole(actorId,time);
+  }
+
   /**
    * Finds an existing thread or creates a new one.
    * If role is provided, it updates the thread's role.
@@ -33,13 +65,21 @@ public class ProcessInstance {
     ProcessThread t = threads.get(actor.id);
     if (t == null) {
       t = new ProcessThread(id, actor, role);
-      threads.put(actor.id, t);
+      addThread(actor.id, t);
     } else if (role != null) {
       t.role = role; // Update role if a specific assignment is found later
     }
     return t;
   }
 
+  /**
+   * Adds the thread under the given key and makes this process its owner.
+   */
+  public void addThread(String key, ProcessThread thread) {
+    thread.owner=this;
+    threads.put(key,thread);
+  }
+
   /**
    * Removes threads with no tasks and orders the remaining threads
    * by the start date of their first action.
@@ -63,11 +103,19 @@ public class ProcessInstance {
     // 4. Re-populate the map with sorted entries
     threads.clear();
     for (ProcessThread pt : sortedThreads) {
-      threads.put(pt.actor.id, pt);
+      addThread(pt.actor.id, pt);
     }
+    invalidateLifetime();
   }
 
+  /**
+   * Returns the interval covering the lifetimes of all threads, or null.
+   * The interval is cached and must not be modified; it is extended when tasks are added
+   * to the threads of this process.
+   */
   public TimeInterval getProcessLifetime() {
+    if (lifetimeThreadCount==threads.size())
+      return lifetime;
     LocalDateTime earliestStart = null;
     LocalDateTime latestEnd = null;
 
@@ -83,10 +131,30 @@ public class ProcessInstance {
       }
     }
 
-    if (earliestStart != null && latestEnd != null)
-      return new TimeInterval(earliestStart,latestEnd);
+    lifetime=(earliestStart != null && latestEnd != null)?new TimeInterval(earliestStart,latestEnd):null;
+    lifetimeThreadCount=threads.size();
+    return lifetime;
+  }
+
+  public void invalidateLifetime() {
+    lifetimeThreadCount=-1;
+  }
 
-    return null;
+  /**
+   * Called by a thread when a task has been added to it; extends the cached lifetime.
+   */
+  void threadChanged(ProcessThread thread) {
+    if (lifetimeThreadCount!=threads.size())
+      return;
+    TimeInterval tint=thread.getLifetime();
+    if (tint==null)
+      return;
+    if (lifetime==null)
+      lifetime=new TimeInterval(tint.start,tint.end);
+    else
+      if (tint.start.isBefore(lifetime.start) || tint.end.isAfter(lifetime.end))
+        lifetime=new TimeInterval((tint.start.isBefore(lifetime.start))?tint.start:lifetime.start,
+            (tint.end.isAfter(lifetime.end))?tint.end:lifetime.end);
   }
 
   public boolean hasPhaseCompletenessDates () {
@@ -1,16 +1,25 @@
 package structures;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 public class ProcessThread {
   public String processID; // ID of the process that includes this thread
   public Actor actor;
   public String role; // Local role: e.g., "primary", "secondary", "external"
-  public List<TaskInstance> tasks = new ArrayList<>();
+  public int roleCode=-1; // code of the role in the SymbolTable
+  private List<TaskInstance> taskList = new ArrayList<>();
+  // The tasks in chronological order; read-only, the tasks are added by addTask,
+  // so that the index and the lifetime are kept up to date
+  public final List<TaskInstance> tasks = Collections.unmodifiableList(taskList);
+  // Index of the tasks for checking membership; the tasks are compared by identity
+  private Set<TaskInstance> taskIndex = Collections.newSetFromMap(new IdentityHashMap<>());
+  // The process that contains the thread; it is notified when the lifetime of the thread grows
+  ProcessInstance owner=null;
+  // Cached lifetime and the number of tasks it accounts for (-1 if it must be computed anew)
+  private LocalDateTime earliestStart=null, latestEnd=null;
+  private TimeInterval lifetime=null;
+  private int lifetimeTaskCount=-1;
 
   public ProcessThread(String processId, Actor actor, String role) {
     this.processID=processId;
@@ -27,52 +36,83 @@ public class ProcessThread {
   }
 
   public void addTask(TaskInstance task) {
-    if (!tasks.contains(task)) {
-      tasks.add(task);
+    if (taskIndex.add(task)) {
+      taskList.add(task);
+      // the lifetime is extended by the new task if it was up to date
+      if (lifetimeTaskCount==tasks.size()-1) {
+        includeInLifetime(task);
+        lifetimeTaskCount=tasks.size();
+      }
+      else
+        lifetimeTaskCount=-1;
+      if (owner!=null)
+        owner.threadChanged(this);
     }
   }
 
   public boolean hasTask(TaskInstance task) {
-    if (task==null || tasks==null)
+    if (task==null)
       return false;
-    return tasks.contains(task);
+    return taskIndex.contains(task);
   }
 
+  /**
+   * Checks if any of the given tasks (e.g., selected) belongs to this thread;
+   * goes through the smaller of the two collections.
+   */
   public boolean hasAnyTask(Set<TaskInstance> taskSet) {
-    if (tasks==null || tasks.isEmpty() || taskSet==null || taskSet.isEmpty())
+    if (tasks.isEmpty() || taskSet==null || taskSet.isEmpty())
+      return false;
+    if (taskSet.size()<tasks.size()) {
+      for (TaskInstance task:taskSet)
+        if (taskIndex.contains(task))
+          return true;
       return false;
+    }
     for (TaskInstance task:tasks)
       if (taskSet.contains(task))
         return true;
     return false;
   }
 
+  /**
+   * Returns the interval from the earliest start to the latest end of the tasks, or null.
+   * The interval is cached and must not be modified; it is extended when tasks are added
+   * by addTask.
+   * If the times of the tasks are changed, invalidateLifetime must be called.
+   */
   public TimeInterval getLifetime() {
-    LocalDateTime earliestStart = null;
-    LocalDateTime latestEnd = null;
-
-    for (TaskInstance task : tasks) {
-      if (task.actual != null) {
-        LocalDateTime start = task.actual.start;
-        LocalDateTime end = task.actual.end;
-
-        if (start != null) {
-          if (earliestStart == null || start.isBefore(earliestStart)) {
-            earliestStart = start;
-          }
-        }
-
-        if (end != null) {
-          if (latestEnd == null || end.isAfter(latestEnd)) {
-            latestEnd = end;
-          }
-        }
-      }
+    if (lifetimeTaskCount!=tasks.size()) {
+      earliestStart=latestEnd=null;
+      lifetime=null;
+      for (TaskInstance task : tasks)
+        includeInLifetime(task);
+      lifetimeTaskCount=tasks.size();
     }
+    return lifetime;
+  }
 
-    if (earliestStart != null && latestEnd != null)
-      return new TimeInterval(earliestStart,latestEnd);
+  public void invalidateLifetime() {
+    lifetimeTaskCount=-1;
+    if (owner!=null)
+      owner.invalidateLifetime();
+  }
 
-    return null;
+  private void includeInLifetime(TaskInstance task) {
+    if (task.actual == null)
+      return;
+    LocalDateTime start = task.actual.start;
+    LocalDateTime end = task.actual.end;
+    boolean changed=false;
+    if (start != null && (earliestStart == null || start.isBefore(earliestStart))) {
+      earliestStart = start;
+      changed=true;
+    }
+    if (end != null && (latestEnd == null || end.isAfter(latestEnd))) {
+      latestEnd = end;
+      changed=true;
+    }
+    if (changed && earliestStart != null && latestEnd != null)
+      lifetime=new TimeInterval(earliestStart,latestEnd);
   }
-}
\ No newline at end of file
+}
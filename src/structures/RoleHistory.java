@@ -0,0 +1,158 @@
+package structures;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * History of the role assignments in a process instance. For each actor, the roles are kept
+ * in the order of the times when they were assigned (a null role means that the assignment
+ * was removed), so that the role of the actor at any moment is found by binary search.
+ * The changes are usually recorded in the chronological order, as they come in the log; a change
+ * earlier than the last one is inserted at its time. Several changes at the same moment leave
+ * only the last one recorded.
+ */
+
+public class RoleHistory {
+  /**
+   * The roles of one actor: parallel arrays of the times (seconds since 1970-01-01T00:00 UTC) and the roles.
+   */
+  private static class Track {
+    long times[]=new long[2];
+    String roles[]=new String[2];
+    int size=0;
+
+    void add(long time, String role) {
+      int i=find(time);
+      if (i>=0 && times[i]==time)
+        // the same moment: the later change overrides
+        roles[i]=role;
+      else {
+        // after the changes made before this time, usually at the end
+        ++i;
+        if (size>=times.length) {
+          times=Arrays.copyOf(times,size*2);
+          roles=Arrays.copyOf(roles,size*2);
+        }
+        System.arraycopy(times,i,times,i+1,size-i);
+        System.arraycopy(roles,i,roles,i+1,size-i);
+        times[i]=time;
+        roles[i]=role;
+        ++size;
+      }
+    }
+
+    /**
+     * Index of the last change made not later than the given time, or -1.
+     */
+    int find(long time) {
+      int low=0, high=size-1;
+      while (low<=high) {
+        int mid=(low+high)>>>1;
+        if (times[mid]<=time)
+          low=mid+1;
+        else
+          high=mid-1;
+      }
+      return high;
+    }
+  }
+
+  private Map<String,Track> tracks=new HashMap<>();
+
+  public static long toEpochSecond(LocalDateTime time) {
+    return time.toEpochSecond(ZoneOffset.UTC);
+  }
+
+  /**
+   * Records that the actor got the role (or lost the role, if the role is null) at the given time.
+   */
+  public void record(String actorId, LocalDateTime time, String role) {
+    record(actorId,toEpochSecond(time),role);
+  }
+
+  public void record(String actorId, long epochSecond, String role) {
+    if (actorId==null)
+      return;
+    Track track=tracks.get(actorId);
+    if (track==null) {
+      if (role==null)
+        return;
+      track=new Track();
+      tracks.put(actorId,track);
+    }
+    track.add(epochSecond,role);
+  }
+
+  /**
+   * Records that all role assignments were removed at the given time.
+   */
+  public void clearAll(LocalDateTime time) {
+    long sec=toEpochSecond(time);
+    for (Track track:tracks.values())
+      track.add(sec,null);
+  }
+
+  /**
+   * Replaces all roles of the actor in the whole history by the given role;
+   * used when the role of an actor is corrected after the log has been loaded.
+   */
+  public void replaceRoles(String actorId, String role) {
+    Track track=tracks.get(actorId);
+    if (track==null)
+      return;
+    for (int i=0; i<track.size; i++)
+      if (track.roles[i]!=null)
+        track.roles[i]=role;
+  }
+
+  /**
+   * Returns the role of the actor at the given time, or null if the actor had no role then.
+   */
+  public String getRole(String actorId, LocalDateTime time) {
+    if (actorId==null || time==null)
+      return null;
+    return getRole(actorId,toEpochSecond(time));
+  }
+
+  public String getRole(String actorId, long epochSecond) {
+    Track track=tracks.get(actorId);
+    if (track==null)
+      return null;
+    int idx=track.find(epochSecond);
+    return (idx<0)?null:track.roles[idx];
+  }
+
+  public boolean isEmpty() {
+    return tracks.isEmpty();
+  }
+
+  public Set<String> getActorIds() {
+    return tracks.keySet();
+  }
+
+  /**
+   * Number of changes recorded for the actor.
+   */
+  public int getNChanges(String actorId) {
+    Track track=tracks.get(actorId);
+    return (track==null)?0:track.size;
+  }
+
+  public long getChangeTime(String actorId, int idx) {
+    return tracks.get(actorId).times[idx];
+  }
+
+  public String getChangeRole(String actorId, int idx) {
+    return tracks.get(actorId).roles[idx];
+  }
+
+  /**
+   * Replaces the role strings by their canonical instances from the symbol table.
+   */
+  public void internRoles(SymbolTable symbols) {
+    for (Track track:tracks.values())
+      for (int i=0; i<track.size; i++)
+        track.roles[i]=symbols.intern(SymbolTable.ROLE,track.roles[i]);
+  }
+}
@@ -0,0 +1,253 @@
+package structures;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Numbers of the processes stuck in each phase on each day: on a day, a process is stuck in the
+ * first phase (in the order of the phases, among those started by that day) whose completeness
+ * date is after that day. For each process, the days when it is stuck in each phase form a few
+ * intervals, which are found by a sweep over the start dates of the phases and the completeness
+ * dates of the process; the counts of the days and phases are made from the intervals.
+ * The same is counted for the selected processes; when the selection or the completeness dates of
+ * some processes change, only the intervals of these processes are subtracted and added again.
+ * The processes of a (day, phase) cell are given as a bit set of the process indexes.
+ */
+
+public class StuckProcessMatrix {
+  private List<Phase> phases=null;
+  private LocalDate firstDay=null;
+  private int nDays=0;
+  // counts[day][phase], the same for the selected processes
+  private int counts[][]=null, selectedCounts[][]=null;
+
+  private List<ProcessInstance> processes=new ArrayList<>();
+  private Map<String,Integer> processIndex=new HashMap<>();
+  // The intervals of each process as triples (phase, first day, day after the last)
+  private List<int[]> intervals=new ArrayList<>();
+  private BitSet selected=new BitSet();
+  // Bit sets of the processes of the cells, made on demand
+  private Map<Integer,BitSet> cellProcesses=new HashMap<>();
+
+  private static final int NO_INTERVALS[]=new int[0];
+
+  /**
+   * Makes the matrix for the days from the start of the first phase to the end of the last one.
+   */
+  public static StuckProcessMatrix build(Collection<ProcessInstance> pList, List<Phase> phases) {
+    StuckProcessMatrix m=new StuckProcessMatrix();
+    m.phases=phases;
+    if (phases==null || phases.isEmpty())
+      return m;
+    m.firstDay=phases.get(0).startDate;
+    m.nDays=(int)(phases.get(phases.size()-1).endDate.toEpochDay()-m.firstDay.toEpochDay())+1;
+    m.counts=new int[m.nDays][phases.size()];
+    m.selectedCounts=new int[m.nDays][phases.size()];
+    if (pList!=null)
+      for (ProcessInstance p:pList)
+        m.update(p);
+    return m;
+  }
+
+  public LocalDate getFirstDay() {
+    return firstDay;
+  }
+
+  public int getNDays() {
+    return nDays;
+  }
+
+  public int getNProcesses() {
+    return processes.size();
+  }
+
+  /**
+   * Returns the index of the day in the matrix or -1 if it is outside the days of the phases.
+   */
+  public int getDayIndex(LocalDate day) {
+    if (day==null || firstDay==null)
+      return -1;
+    long d=day.toEpochDay()-firstDay.toEpochDay();
+    return (d<0 || d>=nDays)?-1:(int)d;
+  }
+
+  public int getCount(int day, int phase) {
+    return counts[day][phase];
+  }
+
+  public int getSelectedCount(int day, int phase) {
+    return selectedCounts[day][phase];
+  }
+
+  /**
+   * Returns a copy of the counts by days and phases, e.g. for painting in another thread.
+   */
+  public int[][] copyCounts(boolean ofSelected) {
+    int src[][]=(ofSelected)?selectedCounts:counts, res[][]=new int[nDays][];
+    for (int d=0; d<nDays; d++)
+      res[d]=src[d].clone();
+    return res;
+  }
+
+  public ProcessInstance getProcess(int idx) {
+    return processes.get(idx);
+  }
+
+  /**
+   * Returns the indexes of the processes stuck in the phase on the day.
+   */
+  public BitSet getProcesses(int day, int phase) {
+    int key=day*phases.size()+phase;
+    BitSet bits=cellProcesses.get(key);
+    if (bits==null) {
+      bits=new BitSet(processes.size());
+      for (int p=0; p<intervals.size(); p++) {
+        int iv[]=intervals.get(p);
+        for (int k=0; k<iv.length; k+=3)
+          if (iv[k]==phase && iv[k+1]<=day && day<iv[k+2]) {
+            bits.set(p);
+            break;
+          }
+      }
+      cellProcesses.put(key,bits);
+    }
+    return bits;
+  }
+
+  /**
+   * Returns the identifiers of the processes stuck in the phase on the day.
+   */
+  public List<String> getProcessIds(int day, int phase) {
+    BitSet bits=getProcesses(day,phase);
+    List<String> ids=new ArrayList<>(bits.cardinality());
+    for (int p=bits.nextSetBit(0); p>=0; p=bits.nextSetBit(p+1))
+      ids.add(processes.get(p).id);
+    return ids;
+  }
+
+  /**
+   * Takes into account new or changed completeness dates of the process.
+   */
+  public void update(ProcessInstance process) {
+    if (counts==null || process==null)
+      return;
+    Integer idx=processIndex.get(process.id);
+    if (idx==null) {
+      idx=processes.size();
+      processIndex.put(process.id,idx);
+      processes.add(process);
+      intervals.add(NO_INTERVALS);
+    }
+    else
+      processes.set(idx,process);
+    boolean isSelected=selected.get(idx);
+    add(intervals.get(idx),-1,isSelected);
+    int iv[]=getIntervals(process);
+    intervals.set(idx,iv);
+    add(iv,1,isSelected);
+    cellProcesses.clear();
+  }
+
+  /**
+   * Takes into account the changes of the completeness dates, e.g. after records have been
+   * appended to the log.
+   */
+  public void update(List<PhaseChange> changes) {
+    if (changes==null)
+      return;
+    ProcessInstance last=null;
+    for (PhaseChange ch:changes)
+      if (ch.process!=last) {
+        // the changes of a process come one after another
+        update(ch.process);
+        last=ch.process;
+      }
+  }
+
+  /**
+   * Sets the selected processes; only the counts of the processes whose selection has changed
+   * are updated.
+   */
+  public void setSelectedProcesses(Set<String> ids) {
+    if (counts==null)
+      return;
+    BitSet newSelected=new BitSet(processes.size());
+    if (ids!=null)
+      for (String id:ids) {
+        Integer idx=processIndex.get(id);
+        if (idx!=null)
+          newSelected.set(idx);
+      }
+    BitSet changed=(BitSet)newSelected.clone();
+    changed.xor(selected);
+    for (int p=changed.nextSetBit(0); p>=0; p=changed.nextSetBit(p+1)) {
+      int iv[]=intervals.get(p), delta=(newSelected.get(p))?1:-1;
+      for (int k=0; k<iv.length; k+=3)
+        for (int d=iv[k+1]; d<iv[k+2]; d++)
+          selectedCounts[d][iv[k]]+=delta;
+    }
+    selected=newSelected;
+  }
+
+  private void add(int iv[], int delta, boolean isSelected) {
+    for (int k=0; k<iv.length; k+=3)
+      for (int d=iv[k+1]; d<iv[k+2]; d++) {
+        counts[d][iv[k]]+=delta;
+        if (isSelected)
+          selectedCounts[d][iv[k]]+=delta;
+      }
+  }
+
+  /**
+   * Finds the intervals of the days when the process is stuck in each phase. The phase of a day
+   * can change only on the start days of the phases and on the completeness dates, so the days
+   * between these are checked once.
+   */
+  private int[] getIntervals(ProcessInstance process) {
+    if (!process.hasPhaseCompletenessDates())
+      return NO_INTERVALS;
+    int nPhases=phases.size();
+    long first=firstDay.toEpochDay();
+    long starts[]=new long[nPhases], done[]=new long[nPhases];
+    int breaks[]=new int[2*nPhases+1], nBreaks=0;
+    breaks[nBreaks++]=0;
+    for (int i=0; i<nPhases; i++) {
+      Phase ph=phases.get(i);
+      starts[i]=ph.startDate.toEpochDay()-first;
+      LocalDate d=process.getPhaseCompletenessDate(ph.name);
+      done[i]=(d==null)?Long.MIN_VALUE:d.toEpochDay()-first;
+      if (starts[i]>0 && starts[i]<nDays)
+        breaks[nBreaks++]=(int)starts[i];
+      if (d!=null && done[i]>0 && done[i]<nDays)
+        breaks[nBreaks++]=(int)done[i];
+    }
+    Arrays.sort(breaks,0,nBreaks);
+    int res[]=new int[3*nBreaks], n=0;
+    for (int b=0; b<nBreaks; b++) {
+      int day=breaks[b];
+      if (b>0 && day==breaks[b-1])
+        continue;
+      int end=nDays;
+      for (int b2=b+1; b2<nBreaks && end==nDays; b2++)
+        if (breaks[b2]>day)
+          end=breaks[b2];
+      int phase=-1;
+      for (int i=0; i<nPhases && phase<0; i++) {
+        if (starts[i]>day)
+          break;
+        if (done[i]!=Long.MIN_VALUE && done[i]>day)
+          phase=i;
+      }
+      if (phase<0)
+        continue;
+      if (n>0 && res[n-3]==phase && res[n-1]==day)
+        res[n-1]=end;
+      else {
+        res[n++]=phase;
+        res[n++]=day;
+        res[n++]=end;
+      }
+    }
+    return Arrays.copyOf(res,n);
+  }
+}
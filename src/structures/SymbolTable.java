@@ -0,0 +1,136 @@
+package structures;
+
+import java.util.*;
+
+/**
+ * Dictionary of the symbols occurring in the log: action types, roles, statuses, outcomes and actor IDs.
+ * Each distinct string of a kind gets a dense int code (0,1,2,...), and the same canonical
+ * String instance is used in the whole model, so that equal values are not stored many times.
+ * The strings remain available for display; comparisons can be done on the codes.
+ */
+
+public class SymbolTable {
+  // Kinds of symbols
+  public static final int ACTION=0, ROLE=1, STATUS=2, OUTCOME=3, ACTOR=4;
+  public static final int N_KINDS=5;
+
+  private Map<String,Integer> codes[]=null;
+  private List<String> names[]=null;
+
+  @SuppressWarnings({"unchecked","rawtypes"})
+  public SymbolTable() {
+    codes=new HashMap[N_KINDS];
+    names=new ArrayList[N_KINDS];
+    for (int k=0; k<N_KINDS; k++) {
+      codes[k]=new HashMap<>();
+      names[k]=new ArrayList<>();
+    }
+  }
+
+  /**
+   * Returns the code of the string, adding the string to the dictionary if it is new;
+   * returns -1 for null.
+   */
+  public int encode(int kind, String s) {
+    if (s==null)
+      return -1;
+    Integer code=codes[kind].get(s);
+    if (code!=null)
+      return code;
+    int c=names[kind].size();
+    names[kind].add(s);
+    codes[kind].put(s,c);
+    return c;
+  }
+
+  /**
+   * Returns the code of the string or -1 if the string is not in the dictionary.
+   */
+  public int getCode(int kind, String s) {
+    if (s==null)
+      return -1;
+    Integer code=codes[kind].get(s);
+    return (code==null)?-1:code;
+  }
+
+  public String decode(int kind, int code) {
+    if (code<0 || code>=names[kind].size())
+      return null;
+    return names[kind].get(code);
+  }
+
+  /**
+   * Returns the canonical instance of the string, adding it to the dictionary if it is new.
+   */
+  public String intern(int kind, String s) {
+    if (s==null)
+      return null;
+    return names[kind].get(encode(kind,s));
+  }
+
+  public int size(int kind) {
+    return names[kind].size();
+  }
+
+  public void encodeActionTypes(Collection<ActionType> actionTypes) {
+    if (actionTypes==null)
+      return;
+    for (ActionType aType:actionTypes)
+      aType.typeName=intern(ACTION,aType.typeName);
+  }
+
+  public void encodeActors(Collection<Actor> actors) {
+    if (actors==null)
+      return;
+    for (Actor a:actors) {
+      a.id=intern(ACTOR,a.id);
+      a.idCode=encode(ACTOR,a.id);
+      a.generalRole=intern(ROLE,a.generalRole);
+      a.generalRoleCode=encode(ROLE,a.generalRole);
+    }
+  }
+
+  public void encodeTask(TaskInstance task) {
+    task.actionType=intern(ACTION,task.actionType);
+    task.actionCode=encode(ACTION,task.actionType);
+    task.status=intern(STATUS,task.status);
+    task.statusCode=encode(STATUS,task.status);
+    task.outcome=intern(OUTCOME,task.outcome);
+    task.outcomeCode=encode(OUTCOME,task.outcome);
+  }
+
+  public void encodeThread(ProcessThread thread) {
+    thread.role=intern(ROLE,thread.role);
+    thread.roleCode=encode(ROLE,thread.role);
+    for (TaskInstance task:thread.tasks)
+      encodeTask(task);
+  }
+
+  public void encodeProcess(ProcessInstance process) {
+    for (Map.Entry<String,String> e:process.roleAssignments.entrySet())
+      e.setValue(intern(ROLE,e.getValue()));
+    process.roleHistory.internRoles(this);
+    for (ProcessThread thread:process.threads.values())
+      encodeThread(thread);
+  }
+
+  public void encodeProcesses(Collection<ProcessInstance> processes) {
+    if (processes==null)
+      return;
+    for (ProcessInstance process:processes)
+      encodeProcess(process);
+  }
+
+  /**
+   * Builds the dictionary for an existing model and sets the codes in all model elements.
+   */
+  public static SymbolTable build(GlobalProcess gProc) {
+    SymbolTable symbols=new SymbolTable();
+    if (gProc.actionTypes!=null)
+      symbols.encodeActionTypes(gProc.actionTypes.values());
+    if (gProc.actors!=null)
+      symbols.encodeActors(gProc.actors.values());
+    symbols.encodeProcesses(gProc.processes);
+    return symbols;
+  }
+}
@@ -13,6 +13,8 @@ public class TaskInstance {
   public List<Actor> actorsInvolved = new ArrayList<>();;
   public String status=null;
   public String outcome=null;
+  // Codes of the action type, status and outcome in the SymbolTable
+  public int actionCode=-1, statusCode=-1, outcomeCode=-1;
   public TimeInterval scheduled;
   public TimeInterval actual;
   public boolean isDelayed=false;
@@ -0,0 +1,249 @@
+package structures;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Index of the tasks by time for range queries: finds the tasks whose actual intervals
+ * overlap a given time interval, optionally only the tasks of a given action type or involving
+ * a given actor, without scanning all processes, threads and tasks.
+ * The tasks are sorted by the start times; for each action type and each actor, the positions
+ * of its tasks in this order are kept. An interval query is answered by binary search for
+ * the last task starting before the end of the interval, going back as far as the longest task
+ * may reach, which is O(log n + k) when the tasks are short, as the logged actions are.
+ * The index is built for the current state of the processes and must be rebuilt when they change
+ * (see GlobalProcess.getTaskTimeIndex).
+ */
+
+public class TaskTimeIndex {
+  private int size=0;
+  private long starts[]=null, ends[]=null;
+  private TaskInstance tasks[]=null;
+  private ProcessInstance processes[]=null;
+  // The longest duration of a task, in seconds
+  private long maxDuration=0;
+  // Positions of the tasks of each action type and of each actor, in increasing order
+  private Map<String,int[]> byAction=new HashMap<>(), byActor=new HashMap<>();
+
+  public static TaskTimeIndex build(Collection<ProcessInstance> pList) {
+    TaskTimeIndex index=new TaskTimeIndex();
+    if (pList!=null)
+      index.fill(pList);
+    return index;
+  }
+
+  private static long toEpochSecond(LocalDateTime t) {
+    return t.toEpochSecond(ZoneOffset.UTC);
+  }
+
+  private void fill(Collection<ProcessInstance> pList) {
+    int n=0;
+    for (ProcessInstance p:pList)
+      for (ProcessThread th:p.threads.values())
+        for (TaskInstance t:th.tasks)
+          if (t.actual!=null && t.actual.start!=null)
+            ++n;
+    long s[]=new long[n];
+    TaskInstance tList[]=new TaskInstance[n];
+    ProcessInstance pArr[]=new ProcessInstance[n];
+    int i=0;
+    long minStart=Long.MAX_VALUE, maxStart=Long.MIN_VALUE;
+    for (ProcessInstance p:pList)
+      for (ProcessThread th:p.threads.values())
+        for (TaskInstance t:th.tasks)
+          if (t.actual!=null && t.actual.start!=null) {
+            s[i]=toEpochSecond(t.actual.start);
+            minStart=Math.min(minStart,s[i]);
+            maxStart=Math.max(maxStart,s[i]);
+            tList[i]=t;
+            pArr[i++]=p;
+          }
+    int order[]=sortByStart(s,minStart,maxStart);
+
+    size=n;
+    starts=new long[n]; ends=new long[n];
+    tasks=new TaskInstance[n]; processes=new ProcessInstance[n];
+    Map<String,Integer> nByAction=new HashMap<>(), nByActor=new HashMap<>();
+    for (i=0; i<n; i++) {
+      int k=order[i];
+      TaskInstance t=tList[k];
+      starts[i]=s[k];
+      ends[i]=(t.actual.end==null)?s[k]:Math.max(s[k],toEpochSecond(t.actual.end));
+      maxDuration=Math.max(maxDuration,ends[i]-starts[i]);
+      tasks[i]=t;
+      processes[i]=pArr[k];
+      if (t.actionType!=null)
+        nByAction.merge(t.actionType,1,Integer::sum);
+      if (t.actorsInvolved!=null)
+        for (int j=0; j<t.actorsInvolved.size(); j++)
+          if (isFirstMention(t.actorsInvolved,j))
+            nByActor.merge(t.actorsInvolved.get(j).id,1,Integer::sum);
+    }
+    Map<String,Integer> filledA=new HashMap<>(), filledP=new HashMap<>();
+    for (Map.Entry<String,Integer> e:nByAction.entrySet())
+      byAction.put(e.getKey(),new int[e.getValue()]);
+    for (Map.Entry<String,Integer> e:nByActor.entrySet())
+      byActor.put(e.getKey(),new int[e.getValue()]);
+    for (i=0; i<n; i++) {
+      TaskInstance t=tasks[i];
+      if (t.actionType!=null)
+        byAction.get(t.actionType)[filledA.merge(t.actionType,1,Integer::sum)-1]=i;
+      if (t.actorsInvolved!=null)
+        for (int j=0; j<t.actorsInvolved.size(); j++)
+          if (isFirstMention(t.actorsInvolved,j)) {
+            String id=t.actorsInvolved.get(j).id;
+            byActor.get(id)[filledP.merge(id,1,Integer::sum)-1]=i;
+          }
+    }
+  }
+
+  /**
+   * Whether the actor at the given position is not null and is not mentioned earlier in the list.
+   */
+  private static boolean isFirstMention(List<Actor> list, int idx) {
+    Actor a=list.get(idx);
+    if (a==null)
+      return false;
+    for (int j=0; j<idx; j++)
+      if (list.get(j)!=null && a.id.equals(list.get(j).id))
+        return false;
+    return true;
+  }
+
+  /**
+   * Returns the positions of the elements in the order of increasing values;
+   * equal values keep their original order.
+   */
+  private static int[] sortByStart(long s[], long min, long max) {
+    int n=s.length;
+    int order[]=new int[n];
+    if (n>0 && max-min<Integer.MAX_VALUE) {
+      // the offsets from the minimum and the positions are packed in longs and sorted as primitives
+      long packed[]=new long[n];
+      for (int i=0; i<n; i++)
+        packed[i]=((s[i]-min)<<32) | i;
+      Arrays.sort(packed);
+      for (int i=0; i<n; i++)
+        order[i]=(int)(packed[i] & 0xFFFFFFFFL);
+      return order;
+    }
+    Integer boxed[]=new Integer[n];
+    for (int i=0; i<n; i++)
+      boxed[i]=i;
+    Arrays.sort(boxed,Comparator.comparingLong(i -> s[i]));
+    for (int i=0; i<n; i++)
+      order[i]=boxed[i];
+    return order;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the tasks whose actual intervals overlap the interval [from,to] (both inclusive),
+   * in the order of their start times. The action type and the actor ID may be null,
+   * otherwise only the tasks of this action type and/or involving this actor are returned.
+   */
+  public List<TaskContext> query(LocalDateTime from, LocalDateTime to, String actionType, String actorId) {
+    List<TaskContext> result=new ArrayList<>();
+    if (from==null || to==null || size==0)
+      return result;
+    long t1=toEpochSecond(from), t2=toEpochSecond(to);
+    if (t2<t1)
+      return result;
+    int rows[]=null;
+    if (actionType!=null) {
+      rows=byAction.get(actionType);
+      if (rows==null)
+        return result;
+    }
+    if (actorId!=null) {
+      int aRows[]=byActor.get(actorId);
+      if (aRows==null)
+        return result;
+      if (rows==null || aRows.length<rows.length)
+        rows=aRows;
+    }
+    // the last position with the start not later than t2; the tasks starting before t1-maxDuration cannot overlap
+    int last=(rows==null)?lastStartingBefore(null,size,t2):lastStartingBefore(rows,rows.length,t2);
+    int first=(rows==null)?lastStartingBefore(null,size,t1-maxDuration-1)+1:
+        lastStartingBefore(rows,rows.length,t1-maxDuration-1)+1;
+    for (int k=first; k<=last; k++) {
+      int i=(rows==null)?k:rows[k];
+      if (ends[i]<t1)
+        continue;
+      TaskInstance t=tasks[i];
+      if (actionType!=null && !actionType.equals(t.actionType))
+        continue;
+      if (actorId!=null && !involves(t,actorId))
+        continue;
+      result.add(new TaskContext(t,processes[i].id));
+    }
+    return result;
+  }
+
+  public List<TaskContext> query(LocalDateTime from, LocalDateTime to) {
+    return query(from,to,null,null);
+  }
+
+  /**
+   * Returns the tasks that overlap the days from d1 to d2 (both inclusive).
+   */
+  public List<TaskContext> queryDays(LocalDate d1, LocalDate d2, String actionType, String actorId) {
+    if (d1==null || d2==null)
+      return new ArrayList<>();
+    return query(d1.atStartOfDay(),d2.plusDays(1).atStartOfDay().minusSeconds(1),actionType,actorId);
+  }
+
+  private static boolean involves(TaskInstance t, String actorId) {
+    if (t.actorsInvolved!=null)
+      for (Actor a:t.actorsInvolved)
+        if (a!=null && actorId.equals(a.id))
+          return true;
+    return false;
+  }
+
+  /**
+   * Binary search for the last position (in 'rows' if not null, otherwise in the whole index)
+   * of a task starting not later than the given time; returns -1 if there is none.
+   */
+  private int lastStartingBefore(int rows[], int n, long time) {
+    int low=0, high=n-1;
+    while (low<=high) {
+      int mid=(low+high)>>>1;
+      long s=starts[(rows==null)?mid:rows[mid]];
+      if (s<=time)
+        low=mid+1;
+      else
+        high=mid-1;
+    }
+    return high;
+  }
+
+  /**
+   * Groups the tasks of each action type by the days when they started.
+   */
+  public Map<String, Map<LocalDate, List<TaskContext>>> getTasksByActionAndDay() {
+    Map<String, Map<LocalDate, List<TaskContext>>> tasksMap = new TreeMap<>();
+    for (Map.Entry<String,int[]> e:byAction.entrySet()) {
+      Map<LocalDate, List<TaskContext>> byDay=new TreeMap<>();
+      long day=Long.MIN_VALUE;
+      List<TaskContext> dayTasks=null;
+      for (int i:e.getValue()) {
+        // the tasks come in the order of the start times, so the tasks of one day are consecutive
+        long d=Math.floorDiv(starts[i],86400L);
+        if (d!=day || dayTasks==null) {
+          day=d;
+          dayTasks=new ArrayList<>();
+          byDay.put(LocalDate.ofEpochDay(d),dayTasks);
+        }
+        dayTasks.add(new TaskContext(tasks[i],processes[i].id));
+      }
+      tasksMap.put(e.getKey(),byDay);
+    }
+    return tasksMap;
+  }
+}
@@ -1,5 +1,7 @@
 package viz;
 
+import structures.ActionDayCube;
+import structures.GlobalProcess;
 import structures.Phase;
 import structures.TaskContext;
 import structures.TaskInstance;
@@ -16,10 +18,15 @@ import java.util.List;
 public class ActionHistogramPanel extends TimelinePanel {
   public static int SHOW_ALL=0, SHOW_SELECTED=1;
 
-  private Map<LocalDate, List<TaskContext>> tasksByDays=null;
+  // Counts and tasks of all actions by days, shared by the histograms; the row of this action is shown
+  private ActionDayCube cube=null;
+  private String actionName=null;
+  private int actionIdx=-1;
   private SelectionManager selectionManager=null;
   private int maxCount, maxCountBarHeight=0;
   private Map<LocalDate, Integer> dayCounts=null;
+  // If set, the tasks in a dragged range are found by the time index of the process
+  private GlobalProcess gProc=null;
 
   public int filterMode=SHOW_ALL;
 
@@ -28,10 +35,13 @@ public class ActionHistogramPanel extends TimelinePanel {
 
   public ActionHistogramPanel(java.util.List<Phase> phases,
                               int maxCount,
-                              Map<LocalDate, List<TaskContext>> tasksByDays,
+                              ActionDayCube cube,
+                              String actionName,
                               SelectionManager selectionManager) {
     super(phases);
-    this.tasksByDays = tasksByDays;
+    this.cube = cube;
+    this.actionName = actionName;
+    this.actionIdx = (cube==null)?-1:cube.getActionIndex(actionName);
     this.maxCount = maxCount;
 
     this.selectionManager=selectionManager;
@@ -95,15 +105,16 @@ public class ActionHistogramPanel extends TimelinePanel {
           // 3. Collect all tasks within this date range
           List<TaskInstance> tasksToToggle = new ArrayList<TaskInstance>();
 
-          // We iterate through our data map to find dates in the range
-          for (Map.Entry<LocalDate, List<TaskContext>> entry : tasksByDays.entrySet()) {
-            LocalDate d = entry.getKey();
-            if ((d.isEqual(startDate) || d.isAfter(startDate)) &&
-                (d.isEqual(endDate) || d.isBefore(endDate))) {
-              for (TaskContext tc:entry.getValue())
-                tasksToToggle.add(tc.task);
+          if (gProc!=null)
+            for (TaskContext tc:gProc.getTaskTimeIndex().queryDays(startDate,endDate,actionName,null))
+              tasksToToggle.add(tc.task);
+          else
+            if (actionIdx>=0) {
+              // the cells of the days in the range
+              int d2=cube.getFirstDayFrom(endDate.plusDays(1));
+              for (int d=cube.getFirstDayFrom(startDate); d<d2; d++)
+                tasksToToggle.addAll(cube.getTasks(actionIdx,d));
             }
-          }
 
           // 4. Update the SelectionManager
           if (!tasksToToggle.isEmpty()) {
@@ -120,6 +131,14 @@ public class ActionHistogramPanel extends TimelinePanel {
     this.addMouseMotionListener(dragListener);
   }
 
+  /**
+   * Sets the process of the histogram, so that ranges of tasks can be found by the time index
+   * instead of going through the days.
+   */
+  public void setGlobalProcess(GlobalProcess gProc) {
+    this.gProc=gProc;
+  }
+
   public int getFilterMode() {
     return filterMode;
   }
@@ -133,37 +152,49 @@ public class ActionHistogramPanel extends TimelinePanel {
   }
 
   private List<TaskInstance> getTasksForDate(LocalDate date) {
-    List<TaskContext> tCon=tasksByDays.get(date);
-    if (tCon==null || tCon.isEmpty())
+    int d=(actionIdx<0)?-1:cube.getDayIndex(date);
+    if (d<0 || cube.getCellSize(actionIdx,d)==0)
       return null;
-    List<TaskInstance> tasks=new ArrayList<TaskInstance>(tCon.size());
-    for (TaskContext tc:tCon)
-      if (filterMode==SHOW_ALL || selectionManager==null || selectionManager.isProcessSelested(tc.processId))
-        tasks.add(tc.task);
+    if (filterMode==SHOW_ALL || selectionManager==null)
+      return cube.getTasks(actionIdx,d);
+    List<TaskInstance> tasks=new ArrayList<TaskInstance>(cube.getCellSize(actionIdx,d));
+    for (int k=0; k<cube.getCellSize(actionIdx,d); k++)
+      if (selectionManager.isProcessSelested(cube.getProcess(actionIdx,d,k).id))
+        tasks.add(cube.getTask(actionIdx,d,k));
     return tasks;
   }
 
   public Map<LocalDate, Integer> countTasksByDays() {
     dayCounts=null;
-    if (tasksByDays==null || tasksByDays.isEmpty())
+    if (actionIdx<0)
       return null;
     TreeMap<LocalDate,Integer> counts=new TreeMap<>();
-    for (Map.Entry<LocalDate,List<TaskContext>> e:tasksByDays.entrySet()) {
-      List<TaskContext> tCon=e.getValue();
-      int count=0;
-      if (tCon!=null && !tCon.isEmpty())
-        if (filterMode==SHOW_ALL || selectionManager==null)
-          count=tCon.size();
-        else
-          for (TaskContext tc:tCon)
-            if (selectionManager.isProcessSelested(tc.processId))
-              ++count;
-      counts.put(e.getKey(), count);
+    for (int d=0; d<cube.getNDays(); d++) {
+      int size=cube.getCellSize(actionIdx,d), count=0;
+      if (size==0)
+        continue;
+      if (filterMode==SHOW_ALL || selectionManager==null)
+        count=size;
+      else
+        for (int k=0; k<size; k++)
+          if (selectionManager.isProcessSelested(cube.getProcess(actionIdx,d,k).id))
+            ++count;
+      counts.put(cube.getDay(d), count);
     }
     dayCounts=counts;
     return counts;
   }
 
+  /**
+   * Replaces the counts and tasks shown in the histogram, e.g. after the data have changed.
+   */
+  public void setCube(ActionDayCube cube) {
+    this.cube=cube;
+    actionIdx=(cube==null)?-1:cube.getActionIndex(actionName);
+    countTasksByDays();
+    repaint();
+  }
+
   public Map<LocalDate, Integer> getDayCounts() {
     if (dayCounts==null)
       countTasksByDays();
@@ -186,13 +217,12 @@ public class ActionHistogramPanel extends TimelinePanel {
     Set<String> ids = new HashSet<>();
     if (selectionManager == null || !selectionManager.hasTaskSelection()) return ids;
 
-    for (List<TaskContext> contexts : tasksByDays.values()) {
-      for (TaskContext tc : contexts) {
-        if (selectionManager.isTaskSelected(tc.task)) {
-          ids.add(tc.processId);
-        }
-      }
-    }
+    if (actionIdx<0) return ids;
+
+    for (int d=0; d<cube.getNDays(); d++)
+      for (int k=0; k<cube.getCellSize(actionIdx,d); k++)
+        if (selectionManager.isTaskSelected(cube.getTask(actionIdx,d,k)))
+          ids.add(cube.getProcess(actionIdx,d,k).id);
     return ids;
   }
 
@@ -1,7 +1,7 @@
 package viz;
 
+import structures.ActionDayCube;
 import structures.GlobalProcess;
-import structures.TaskContext;
 
 import javax.swing.*;
 import java.awt.*;
@@ -12,32 +12,29 @@ import java.util.*;
 import java.util.List;
 
 public class ActionOverviewPanel extends JPanel {
+  private GlobalProcess gProc=null;
   private SelectionManager selectionManager=null;
   private List<CollapsibleActionSection> sections = new ArrayList<>();
+  private Map<String,CollapsibleActionSection> sectionsByAction = new HashMap<>();
   private int globalMax = 0;
   private int mode = 1; // 1: common, 2: individual, 3: common visible
   private JPanel contentPanel; // The panel inside the scroll pane
 
   public ActionOverviewPanel(GlobalProcess gProc, SelectionManager selectionManager) {
+    this.gProc=gProc;
     this.selectionManager=selectionManager;
     // Use BorderLayout to separate ScrollPane from ControlPanel
     setLayout(new BorderLayout());
 
-    Map<String, Map<LocalDate, Integer>> data = gProc.getActionCountsByDay();
+    ActionDayCube cube = gProc.getActionDayCube();
 
     // --- Logic for Sorting (remains same) ---
     List<ActionPeakInfo> sortedActions = new ArrayList<>();
-    for (String type : data.keySet()) {
-      int localMax = 0;
-      LocalDate peakDate = null;
-      for (Map.Entry<LocalDate, Integer> entry : data.get(type).entrySet()) {
-        if (entry.getValue() > localMax) {
-          localMax = entry.getValue();
-          peakDate = entry.getKey();
-        }
-      }
+    for (int a = 0; a < cube.getNActions(); a++) {
+      int peak = cube.getPeakDay(a);
+      int localMax = cube.getCount(a, peak);
       if (localMax > globalMax) globalMax = localMax;
-      if (peakDate != null) sortedActions.add(new ActionPeakInfo(type, peakDate, localMax));
+      if (localMax > 0) sortedActions.add(new ActionPeakInfo(cube.getAction(a), cube.getDay(peak), localMax));
     }
     Collections.sort(sortedActions, (a, b) -> {
       int dateComp = a.peakDate.compareTo(b.peakDate);
@@ -51,24 +48,8 @@ public class ActionOverviewPanel extends JPanel {
     contentPanel = new JPanel();
     contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
 
-    Map<String, Map<LocalDate, List<TaskContext>>> allTasksByDays=gProc.getTasksByActionAndDay();
-
-    for (ActionPeakInfo info : sortedActions) {
-      Map<LocalDate, List<TaskContext>> tasksByDays = allTasksByDays.get(info.actionName);
-      if (tasksByDays==null || tasksByDays.isEmpty())
-        continue;;
-      ActionHistogramPanel hist = new ActionHistogramPanel(
-          gProc.getListOfPhases(), globalMax,tasksByDays,selectionManager);
-
-      // Callback now includes a call to updateLayout to remove empty space
-      CollapsibleActionSection section = new CollapsibleActionSection(info.actionName, hist, () -> {
-        updateScaling();
-        updateLayout();
-      });
-
-      sections.add(section);
-      contentPanel.add(section);
-    }
+    for (ActionPeakInfo info : sortedActions)
+      addSection(info.actionName,cube);
 
     // Use a wrapper panel with BorderLayout.NORTH to prevent vertical stretching
     // of sections if the list is short
@@ -94,6 +75,42 @@ public class ActionOverviewPanel extends JPanel {
         }
       });
     }
+    gProc.addChangeListener(this::updateData);
+  }
+
+  private void addSection(String actionName, ActionDayCube cube) {
+    ActionHistogramPanel hist = new ActionHistogramPanel(
+        gProc.getListOfPhases(), globalMax,cube,actionName,selectionManager);
+    hist.setGlobalProcess(gProc);
+    if (!sections.isEmpty())
+      hist.setFilterMode(sections.get(0).getFilterMode());
+
+    // Callback now includes a call to updateLayout to remove empty space
+    CollapsibleActionSection section = new CollapsibleActionSection(actionName, hist, () -> {
+      updateScaling();
+      updateLayout();
+    });
+
+    sections.add(section);
+    sectionsByAction.put(actionName,section);
+    contentPanel.add(section);
+  }
+
+  /**
+   * Updates the histograms after the data have changed; sections for new actions are added at the end.
+   */
+  private void updateData() {
+    ActionDayCube cube=gProc.getActionDayCube();
+    for (CollapsibleActionSection section:sections)
+      section.getHistogramPanel().setCube(cube);
+    for (int a=0; a<cube.getNActions(); a++)
+      if (!sectionsByAction.containsKey(cube.getAction(a)))
+        addSection(cube.getAction(a),cube);
+    for (CollapsibleActionSection section:sections)
+      section.determineLocalMax();
+    determineGlobalMax();
+    updateScaling();
+    updateLayout();
   }
 
   private void updateLayout() {
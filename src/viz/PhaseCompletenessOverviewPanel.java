@@ -10,7 +10,6 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Visualizes aggregated phase completeness information.
@@ -20,6 +19,26 @@ public class PhaseCompletenessOverviewPanel extends TimelinePanel {
   private GlobalProcess gProc;
   private SelectionManager selectionManager;
   private TexturePaint hatchPaint;
+  // Increased when the data or the selection of processes change; the bars are rendered anew
+  private long dataVersion=0, selectionVersion=0;
+  // The bars are rendered in background threads into images of horizontal tiles (see TileRenderer)
+  private TileRenderer<BarsState> tileRenderer=new TileRenderer<>(this,this::paintTile);
+  // If false, the bars are painted directly, e.g. for printing or saving an image
+  public boolean renderInTiles=true;
+  // The numbers of the stuck processes by days and phases, made once and then updated
+  // with the changes of the completeness dates and of the selection
+  private StuckProcessMatrix matrix=null;
+
+  /**
+   * What is painted in the tiles: copies of the counts of the stuck processes and of the selected
+   * stuck processes, made when the state was made, and the size of the panel.
+   */
+  private static class BarsState {
+    long dataVersion, selectionVersion;
+    int width, height, nProcesses;
+    // by days and phases
+    int counts[][]=null, selectedCounts[][]=null;
+  }
 
   public PhaseCompletenessOverviewPanel(GlobalProcess gProc, SelectionManager selectionManager) {
     super(gProc.getListOfPhases());
@@ -35,8 +54,23 @@ public class PhaseCompletenessOverviewPanel extends TimelinePanel {
 
     if (selectionManager != null) {
       // UPDATE: Register for process-specific selection changes
-      selectionManager.addProcessListener(this::repaint);
+      selectionManager.addProcessListener(() -> {
+        ++selectionVersion;
+        if (matrix!=null)
+          matrix.setSelectedProcesses(selectionManager.getSelectedProcessIds());
+        repaint();
+      });
     }
+    gProc.addChangeListener(() -> {
+      ++dataVersion;
+      repaint();
+    });
+    gProc.addPhaseChangeListener(changes -> {
+      if (matrix!=null)
+        matrix.update(changes);
+      ++dataVersion;
+      repaint();
+    });
 
     addMouseListener(new MouseAdapter() {
       @Override
@@ -50,29 +84,72 @@ public class PhaseCompletenessOverviewPanel extends TimelinePanel {
 
   @Override
   protected void paintComponent(Graphics g) {
-    super.paintComponent(g);
-    if (phases == null || gProc == null) return;
-
+    if (phases == null || gProc == null) {
+      super.paintComponent(g);
+      return;
+    }
     Graphics2D g2d = (Graphics2D) g;
-    int width = getWidth();
-    double pixelsPerProcess = (double) (sectionHeight - 5) / gProc.processes.size();
+    int width = getWidth(), height = getHeight();
+    BarsState st=tileRenderer.getState();
+    if (st==null || st.dataVersion!=dataVersion || st.selectionVersion!=selectionVersion ||
+        st.width!=width || st.height!=height) {
+      st=new BarsState();
+      st.dataVersion=dataVersion;
+      st.selectionVersion=selectionVersion;
+      st.width=width;
+      st.height=height;
+      StuckProcessMatrix m=getMatrix();
+      st.nProcesses=gProc.processes.size();
+      st.counts=m.copyCounts(false);
+      st.selectedCounts=m.copyCounts(true);
+      tileRenderer.setState(st);
+    }
+    if (renderInTiles) {
+      // the tiles include the background; it is painted here only where there are no tiles yet
+      if (tileRenderer.hasTiles(g,width,height))
+        updateGeometry(g2d);
+      else
+        super.paintComponent(g);
+      tileRenderer.paint(g,width,height);
+    }
+    else {
+      super.paintComponent(g);
+      paintBars(g2d,st);
+    }
+  }
+
+  /**
+   * Paints a tile: the background of the phases and the bars; called in a background thread.
+   */
+  private void paintTile(Graphics2D g2d, BarsState st, int width, int y, int height) {
+    g2d.setColor(getBackground());
+    g2d.fillRect(0, y, width, height);
+    paintPhaseBackgrounds(g2d, width, 0, st.height);
+    paintBars(g2d, st);
+  }
+
+  /**
+   * Paints the bars of the stuck processes for all days, with the selected processes hatched.
+   */
+  private void paintBars(Graphics2D g2d, BarsState st) {
+    int width = st.width, yBottom = st.height, sectionHeight = st.height;
+    double pixelsPerProcess = (double) (sectionHeight - 5) / st.nProcesses;
 
     LocalDate start = minDate.toLocalDate();
     long days = ChronoUnit.DAYS.between(start, maxDate.toLocalDate());
     int barWidth = (int) (width / (days + 1));
 
-    for (int d = 0; d <= days; d++) {
+    for (int d = 0; d <= days && d < st.counts.length; d++) {
       LocalDate currentDay = start.plusDays(d);
-      List<ProcessInstance>[] stuckGroups = getStuckProcessesForDate(currentDay);
+      int counts[] = st.counts[d];
 
       int x = getXForDate(currentDay, width);
       int currentY = yBottom;
 
-      for (int i = 0; i < stuckGroups.length; i++) {
-        List<ProcessInstance> group = stuckGroups[i];
-        if (group.isEmpty()) continue;
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i]==0) continue;
 
-        int segmentHeight = (int) (group.size() * pixelsPerProcess);
+        int segmentHeight = (int) (counts[i] * pixelsPerProcess);
         Color phaseColor = getPhaseColor(i);
 
         // 1. Draw solid phase segment
@@ -80,20 +157,14 @@ public class PhaseCompletenessOverviewPanel extends TimelinePanel {
         g2d.fillRect(x, currentY - segmentHeight, barWidth, segmentHeight);
 
         // 2. Draw patterned overlay for selected instances
-        if (selectionManager != null) {
-          Set<String> selectedIds = selectionManager.getSelectedProcessIds();
-          long selectedCount = group.stream()
-              .filter(p -> selectedIds.contains(p.id))
-              .count();
-
-          if (selectedCount > 0) {
-            int selectedHeight = (int) (selectedCount * pixelsPerProcess);
-            Paint oldPaint = g2d.getPaint();
-            g2d.setPaint(hatchPaint);
-            // Draw the hatch pattern from the bottom of this specific segment upwards
-            g2d.fillRect(x, currentY - selectedHeight, barWidth, selectedHeight);
-            g2d.setPaint(oldPaint);
-          }
+        int selectedCount = st.selectedCounts[d][i];
+        if (selectedCount > 0) {
+          int selectedHeight = (int) (selectedCount * pixelsPerProcess);
+          Paint oldPaint = g2d.getPaint();
+          g2d.setPaint(hatchPaint);
+          // Draw the hatch pattern from the bottom of this specific segment upwards
+          g2d.fillRect(x, currentY - selectedHeight, barWidth, selectedHeight);
+          g2d.setPaint(oldPaint);
         }
 
         // 3. Draw segment border
@@ -104,6 +175,19 @@ public class PhaseCompletenessOverviewPanel extends TimelinePanel {
     }
   }
 
+  /**
+   * Returns the matrix of the stuck processes; makes it anew if the processes have been
+   * added or replaced otherwise than with the changes of the completeness dates.
+   */
+  private StuckProcessMatrix getMatrix() {
+    if (matrix==null || matrix.getNProcesses()!=gProc.processes.size()) {
+      matrix=StuckProcessMatrix.build(gProc.processes,phases);
+      if (selectionManager!=null)
+        matrix.setSelectedProcesses(selectionManager.getSelectedProcessIds());
+    }
+    return matrix;
+  }
+
   private boolean handleSelection(Point pt) {
     if (selectionManager == null) return false;
 
@@ -111,15 +195,17 @@ public class PhaseCompletenessOverviewPanel extends TimelinePanel {
     double ratio = (double) pt.x / width;
     LocalDate clickDate = minDate.plusSeconds((long)(ratio * totalDuration)).toLocalDate();
 
-    List<ProcessInstance>[] groups = getStuckProcessesForDate(clickDate);
+    StuckProcessMatrix m=getMatrix();
+    int day=m.getDayIndex(clickDate);
+    if (day<0)
+      return false;
     double pixelsPerProcess = (double) (sectionHeight - 5) / gProc.processes.size();
     int currentY = yBottom;
 
-    for (List<ProcessInstance> group : groups) {
-      int segmentHeight = (int) (group.size() * pixelsPerProcess);
+    for (int i = 0; i < phases.size(); i++) {
+      int segmentHeight = (int) (m.getCount(day,i) * pixelsPerProcess);
       if (pt.y <= currentY && pt.y >= currentY - segmentHeight) {
-        List<String> ids = group.stream().map(p -> p.id).collect(Collectors.toList());
-        selectionManager.toggleProcesses(ids);
+        selectionManager.toggleProcesses(m.getProcessIds(day,i));
         return true;
       }
       currentY -= segmentHeight;
@@ -127,24 +213,6 @@ public class PhaseCompletenessOverviewPanel extends TimelinePanel {
     return false;
   }
 
-  private List<ProcessInstance>[] getStuckProcessesForDate(LocalDate date) {
-    List<ProcessInstance>[] groups = new ArrayList[phases.size()];
-    for (int i = 0; i < phases.size(); i++) groups[i] = new ArrayList<>();
-
-    for (ProcessInstance pi : gProc.processes) {
-      for (int i = 0; i < phases.size(); i++) {
-        Phase p = phases.get(i);
-        if (p.startDate.isAfter(date)) break;
-        LocalDate comp = pi.getPhaseCompletenessDate(p.name);
-        if (comp != null && comp.isAfter(date)) {
-          groups[i].add(pi);
-          break;
-        }
-      }
-    }
-    return groups;
-  }
-
   private int getXForDate(LocalDate date, int width) {
     LocalDateTime dateTime = date.atStartOfDay();
     long secondsFromStart = ChronoUnit.SECONDS.between(minDate, dateTime);
@@ -160,18 +228,20 @@ public class PhaseCompletenessOverviewPanel extends TimelinePanel {
     long offsetSeconds = (long) (ratio * totalDuration);
     LocalDate hoverDate = minDate.plusSeconds(offsetSeconds).toLocalDate();
 
-    List<ProcessInstance>[] groups = getStuckProcessesForDate(hoverDate);
+    StuckProcessMatrix m=getMatrix();
+    int day=m.getDayIndex(hoverDate);
     double pixelsPerProcess = (double) (sectionHeight - 5) / gProc.processes.size();
 
     String segmentInfo = "";
     int currentY = yBottom;
 
-    for (int i = 0; i < groups.length; i++) {
-      int segmentHeight = (int) (groups[i].size() * pixelsPerProcess);
+    for (int i = 0; i < phases.size() && day>=0; i++) {
+      int count=m.getCount(day,i);
+      int segmentHeight = (int) (count * pixelsPerProcess);
       if (pt.y <= currentY && pt.y >= currentY - segmentHeight) {
         segmentInfo = String.format("<br>Incomplete Phase: <b>%s</b>" +
                 "<br>Process Count: <b>%d</b>",
-            phases.get(i).name, groups[i].size());
+            phases.get(i).name, count);
         break;
       }
       currentY -= segmentHeight;
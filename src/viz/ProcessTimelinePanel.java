@@ -3,7 +3,8 @@ package viz;
 import structures.*;
 
 import java.awt.*;
-import java.time.LocalDate;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.util.*;
 import java.util.List;
 
@@ -14,6 +15,13 @@ public class ProcessTimelinePanel extends TimelinePanel{
   public static int SHOW_ALL=0, SHOW_SELECTED=1;
   public static Color taskSymbolColor=new Color(60,60,255,160),
       delayedTaskColor=Color.red.darker();
+  // A thread is drawn as a density strip instead of task symbols when it has at least lodMinTasks
+  // tasks and more than lodTasksPerPixel tasks per pixel of its line; the strip shows the numbers
+  // of the tasks in bins of stripBinWidth pixels; the selected tasks are marked over the strip
+  public static float lodTasksPerPixel=0.5f;
+  public static int lodMinTasks=16, stripBinWidth=2;
+  // The colors of the bins from the smallest to the greatest count relative to the row
+  private static Color stripColors[]=null, stripDelayedColors[]=null;
   public static Color threadHighlightColor=new Color(0,240,255,180),
       processHighlightColor=new Color(255,255,0,90);
   
@@ -23,12 +31,17 @@ public class ProcessTimelinePanel extends TimelinePanel{
   public int symbolMode=SYMBOL_CHAR;
   public int filterMode=SHOW_ALL;
   
-  protected Map<Rectangle, ProcessInstance> processAreas = null;
-  protected Map<String,Map<Rectangle,Actor>> processActorAreas=null;
-  protected Map<Rectangle,Actor> actorAreas=null;
-  protected Map<String,Map<Rectangle,TaskInstance>> processTaskAreas=null;
   protected Map<String, Color> actorRoleColors=null;
 
+  // The positions of the blocks, thread lines and task symbols are computed once and kept until
+  // the data, grouping, filter or width change; painting and hit-testing only read them
+  private TimelineLayout layout=null;
+  // The phase backgrounds, thread lines and task symbols are rendered in background threads
+  // into images of horizontal tiles, which are drawn when the panel is painted (see TileRenderer)
+  private TileRenderer<TileState> tileRenderer=new TileRenderer<>(this,this::paintTile);
+  // If false, the content is painted directly, e.g. for printing or saving an image
+  public boolean renderInTiles=true;
+
   // Define the dashed stroke for "inactive" periods
   private final float[] dashPattern = {3.0f, 2.0f};
   private final Stroke dashedStroke = new BasicStroke(1f, BasicStroke.CAP_BUTT,
@@ -43,12 +56,20 @@ public class ProcessTimelinePanel extends TimelinePanel{
     actorRoleColors=Utils.generateItemColors(gProc.actorRoles);
     ArrayList<String> actionTypes=new ArrayList<String>(gProc.actionTypes.keySet());
     setPreferredSize(new Dimension(1200, 100 + gProc.processes.size() * actorLineSpacing*10));
+    gProc.addChangeListener(() -> {
+      if (gProc.actorRoles!=null && (actorRoleColors==null || gProc.actorRoles.size()!=actorRoleColors.size()))
+        actorRoleColors=Utils.generateItemColors(gProc.actorRoles);
+      updateLayout();
+    });
     if (selectionManager!=null) {
       selectionManager.addTaskListener(() -> {
         repaint();
       });
       selectionManager.addProcessListener(() -> {
-        repaint();
+        if (filterMode==SHOW_SELECTED)
+          updateLayout();
+        else
+          repaint();
       });
 
       // Add mouse listener for selection
@@ -60,6 +81,41 @@ public class ProcessTimelinePanel extends TimelinePanel{
         }
       });
     }
+    // the layout depends on the width; it is made anew here rather than when painting,
+    // because it may change the height of the panel
+    addComponentListener(new ComponentAdapter() {
+      @Override
+      public void componentResized(ComponentEvent e) {
+        super.componentResized(e);
+        if (getWidth()>0 && getWidth()!=layout.width)
+          updateLayout();
+      }
+    });
+    makeLayout();
+  }
+
+  /**
+   * Makes the layout anew for the current width and adapts the size of the panel.
+   */
+  private void makeLayout() {
+    int width=getWidth();
+    if (width<=0)
+      width=getPreferredSize().width;
+    layout=TimelineLayout.build(gProc,this,phaseColors,groupingMode,filterMode,selectionManager,
+        width,yTop + 2 * actorLineSpacing);
+    updatePanelSize(layout.height);
+  }
+
+  private void updateLayout() {
+    makeLayout();
+    repaint();
+  }
+
+  /**
+   * Returns the current layout; it is made when the data, grouping, filter or width change.
+   */
+  public TimelineLayout getLayoutModel() {
+    return layout;
   }
 
   public SelectionManager getSelectionManager() {
@@ -68,7 +124,7 @@ public class ProcessTimelinePanel extends TimelinePanel{
 
   public void setGroupingMode(int groupingMode) {
     this.groupingMode = groupingMode;
-    repaint();
+    updateLayout();
   }
 
   public int getGroupingMode() {
@@ -90,150 +146,227 @@ public class ProcessTimelinePanel extends TimelinePanel{
 
   public void setFilterMode(int filterMode) {
     this.filterMode = filterMode;
-    repaint();
+    updateLayout();
+  }
+
+  /**
+   * What is painted in the tiles: the layout and the drawing options; the selection is
+   * painted over the tiles, so that selecting does not require rendering the tiles anew.
+   */
+  private static class TileState {
+    TimelineLayout layout=null;
+    int height, symbolMode;
+    Map<String, Color> roleColors=null;
   }
 
   protected void paintComponent(Graphics g) {
-    super.paintComponent(g); // Draw background phases
-    if (groupingMode ==PROCESS_MODE)
-      paintByProcesses(g);
-    else
-      if (groupingMode ==ACTOR_MODE)
-        paintByActors(g);
+    Graphics2D g2d = (Graphics2D) g;
+    TimelineLayout lt=getLayoutModel();
+    TileState st=tileRenderer.getState();
+    if (st==null || st.layout!=lt || st.height!=getHeight() || st.symbolMode!=symbolMode ||
+        st.roleColors!=actorRoleColors) {
+      st=new TileState();
+      st.layout=lt;
+      st.height=getHeight();
+      st.symbolMode=symbolMode;
+      st.roleColors=actorRoleColors;
+      tileRenderer.setState(st);
+    }
+    if (renderInTiles) {
+      // the tiles include the background; it is painted here only where there are no tiles yet
+      if (tileRenderer.hasTiles(g,getWidth(),getHeight()))
+        updateGeometry(g2d);
+      else
+        super.paintComponent(g);
+      tileRenderer.paint(g,getWidth(),getHeight());
+    }
+    else {
+      super.paintComponent(g); // Draw background phases
+      Rectangle clip=g.getClipBounds();
+      if (clip==null)
+        clip=new Rectangle(0,0,getWidth(),getHeight());
+      paintContent(g2d,st,clip.y,clip.y+clip.height);
+    }
+    paintSelection(g2d,lt);
+  }
+
+  /**
+   * Paints a tile: the background of the phases and the content; called in a background thread.
+   */
+  private void paintTile(Graphics2D g2d, TileState st, int width, int y, int height) {
+    g2d.setColor(getBackground());
+    g2d.fillRect(0, y, width, height);
+    paintPhaseBackgrounds(g2d, width, 0, st.height);
+    paintContent(g2d, st, y, y+height);
   }
 
   private void updatePanelSize(int height) {
     height += 2 * actorLineSpacing;
+    if (height==getPreferredSize().height)
+      return;
     setPreferredSize(new Dimension(getPreferredSize().width, height));
     revalidate(); // Notify the scroll pane that the size has changed
   }
 
-  private void clearAreaMaps() {
-    if (processAreas == null) processAreas = new HashMap<>(); else processAreas.clear();
-    if (processTaskAreas == null) processTaskAreas = new HashMap<>(); else processTaskAreas.clear();
-    if (processActorAreas == null) processActorAreas = new HashMap<>(); else processActorAreas.clear();
-    if (actorAreas == null) actorAreas = new HashMap<>(); else actorAreas.clear();
+  /**
+   * Returns the index of the first block that may be visible between y1 and y2
+   * and the index after the last such block.
+   */
+  private int[] getBlocksInRange(TimelineLayout lt, int y1, int y2, int margin) {
+    int first=lt.getFirstBlockFrom(y1,margin);
+    int last=first;
+    while (last<lt.nBlocks && lt.blockY0[last]-margin<=y2)
+      ++last;
+    int range[]={first,last};
+    return range;
   }
 
-  public void paintByProcesses(Graphics g) {
-    int width = getWidth();
-    Graphics2D g2d = (Graphics2D) g;
+  /**
+   * Paints the blocks between y1 and y2 without the selection highlights:
+   * the delays of the phases, the lines of the threads and the task symbols.
+   * Called in the tile rendering threads; uses only the state given.
+   */
+  private void paintContent(Graphics2D g2d, TileState st, int y1, int y2) {
+    TimelineLayout lt=st.layout;
     Stroke defaultStroke = g2d.getStroke();
     FontMetrics fm = g2d.getFontMetrics();
-
-    clearAreaMaps();
-    int y0 = yTop + 2 * actorLineSpacing;
-
-    for (ProcessInstance p : gProc.processes) {
-      if (filterMode==SHOW_SELECTED && selectionManager!=null && !selectionManager.isProcessSelested(p.id))
-        continue;
-
-      TimeInterval pLife = p.getProcessLifetime();
-      int xStartProcess = getXForTime(pLife.start, width);
-      int xEndProcess = getXForTime(pLife.end, width);
-
-      List<ProcessThread> sortedThreads = new ArrayList<>(p.threads.values());
-      int vLineHeight = (sortedThreads.size() - 1) * actorLineSpacing;
-      int maxY = y0+vLineHeight;
-
-      if (filterMode==SHOW_ALL) {
-        boolean selected = selectionManager != null && selectionManager.isProcessSelested(p.id);
-        if (selected) {
-          g2d.setColor(processHighlightColor);
-          g2d.fillRect(xStartProcess, y0, xEndProcess - xStartProcess, vLineHeight + actorLineSpacing);
-        }
-      }
-
-      if (p.hasPhaseCompletenessDates()) {
-        for (Phase ph:gProc.phases.values()) {
-          LocalDate d=p.getPhaseCompletenessDate(ph.name);
-          if (d!=null && d.isAfter(ph.endDate)) {
-            int x2=getXForTime(d.atTime(23,59,59),width),
-                x1=getXForTime(ph.endDate.atTime(23,59,59),width);
-            if (x2>x1) {
-              Color c=phaseColors.get(ph.name);
-              c=new Color(c.getRed(),c.getGreen(),c.getBlue(),128);
-              g2d.setColor(c);
-              g2d.fillRect(x1,y0,x2-x1,vLineHeight+actorLineSpacing);
-            }
-          }
-        }
+    // the symbols extend beyond the lines of the threads
+    int range[]=getBlocksInRange(lt,y1,y2,2*actorLineSpacing+fm.getHeight());
+    for (int b=range[0]; b<range[1]; b++) {
+      int y0=lt.blockY0[b];
+      int nRows=lt.blockRows[b+1]-lt.blockRows[b];
+      int vLineHeight = (nRows - 1) * actorLineSpacing;
+
+      for (int o=lt.blockOverlays[b]; o<lt.blockOverlays[b+1]; o++) {
+        g2d.setColor(lt.overlayColor[o]);
+        g2d.fillRect(lt.overlayX1[o],y0,lt.overlayX2[o]-lt.overlayX1[o],vLineHeight+actorLineSpacing);
       }
 
-      // Vertical initiation line
-      if (!sortedThreads.isEmpty()) {
-        g.setColor(Color.darkGray);
+      // Vertical initiation or grouping line
+      if (nRows>0) {
+        g2d.setColor(Color.darkGray);
         g2d.setStroke(defaultStroke);
-        g.drawLine(xStartProcess, y0 + actorLineSpacing / 2,
-            xStartProcess, y0 + actorLineSpacing / 2 + vLineHeight);
+        g2d.drawLine(lt.blockX1[b], y0 + actorLineSpacing / 2,
+            lt.blockX1[b], y0 + actorLineSpacing / 2 + vLineHeight);
       }
 
-      for (int i = 0; i < sortedThreads.size(); i++) {
-        ProcessThread thread = sortedThreads.get(i);
-        TimeInterval tLife = thread.getLifetime();
-        int xStartThread = getXForTime(tLife.start, width);
-        int xEndThread = getXForTime(tLife.end, width);
-
-        int y = y0 + i * actorLineSpacing + actorLineSpacing / 2;
-        maxY = Math.max(maxY, y);
-
-        // Determine if this specific thread contains selected tasks
-        boolean isThreadSelected = selectionManager != null && selectionManager.hasTaskSelection() &&
-            thread.hasAnyTask(selectionManager.getSelectedTasks());
+      for (int r=lt.blockRows[b]; r<lt.blockRows[b+1]; r++)
+        paintRow(g2d,st,r,fm,false);
+    }
+  }
 
-        if (isThreadSelected) {
-          g.setColor(threadHighlightColor);
-          g.fillRect(xStartProcess, y - 2, xEndThread - xStartProcess, 5);
-        }
-        Color roleColor = actorRoleColors.getOrDefault(thread.role, Color.gray);
-        g.setColor(roleColor);
-        // Pre-activity: Thin and Dashed
-        g2d.setStroke(dashedStroke);
-        g.drawLine(xStartProcess, y, xStartThread, y);
-        // Activity phase: Thin and Solid
-        g2d.setStroke(solidStroke);
-        g.drawLine(xStartThread, y, xEndThread, y);
-
-        for (int tIdx=0; tIdx<thread.tasks.size(); tIdx++) {
-          TaskInstance t=thread.tasks.get(tIdx);
-          if (tIdx>0) {
-            TaskInstance tPrev=thread.tasks.get(tIdx-1);
-            if (tPrev.isDelayed &&
-                getXForTime(t.actual.start,width)-getXForTime(tPrev.actual.start,width)<=markRadius)
-              continue;
-          }
-          if (!t.isDelayed && tIdx+1<thread.tasks.size()) {
-            TaskInstance tNext=thread.tasks.get(tIdx+1);
-            if (getXForTime(tNext.actual.start,width)-getXForTime(t.actual.start,width)<=markRadius)
-              continue;
+  /**
+   * Paints the highlights of the selected processes and, anew over the tiles, the threads
+   * with selected tasks in the clip area.
+   */
+  private void paintSelection(Graphics2D g2d, TimelineLayout lt) {
+    if (selectionManager==null)
+      return;
+    boolean processes=lt.filterMode==SHOW_ALL && !selectionManager.getSelectedProcessIds().isEmpty(),
+        tasks=selectionManager.hasTaskSelection();
+    if (!processes && !tasks)
+      return;
+    TileState st=tileRenderer.getState();
+    FontMetrics fm = g2d.getFontMetrics();
+    Rectangle clip=g2d.getClipBounds();
+    if (clip==null)
+      clip=new Rectangle(0,0,getWidth(),getHeight());
+    int range[]=getBlocksInRange(lt,clip.y,clip.y+clip.height,2*actorLineSpacing+fm.getHeight());
+    for (int b=range[0]; b<range[1]; b++) {
+      if (processes) {
+        g2d.setColor(processHighlightColor);
+        if (lt.groupingMode==PROCESS_MODE) {
+          if (selectionManager.isProcessSelested(lt.blockProcess[b].id)) {
+            int vLineHeight = (lt.blockRows[b+1]-lt.blockRows[b] - 1) * actorLineSpacing;
+            g2d.fillRect(lt.blockX1[b], lt.blockY0[b], lt.blockX2[b] - lt.blockX1[b], vLineHeight + actorLineSpacing);
           }
-          drawTaskSymbol(g2d, t, width, y, p, fm);
         }
-
-        Map<Rectangle, Actor> actorProcAreas = processActorAreas.computeIfAbsent(p.id, k -> new HashMap<>());
-        actorProcAreas.put(new Rectangle(xStartProcess, y - markRadius,
-            xEndThread - xStartProcess, markDiameter), thread.actor);
+        else {
+          int minActorX=lt.blockX1[b], hWidth = actorLineSpacing - 2;
+          for (int r=lt.blockRows[b]; r<lt.blockRows[b+1]; r++)
+            if (selectionManager.isProcessSelested(lt.rowProcess[r].id))
+              g2d.fillRect(minActorX, lt.rowY[r] - hWidth / 2, lt.rowXEndProcess[r] - minActorX, hWidth);
+        }
       }
-
-      processAreas.put(new Rectangle(xStartProcess - 3, y0 - 3, xEndProcess - xStartProcess + 6, maxY - y0 + 6), p);
-      y0 = maxY + actorLineSpacing * 4;
+      if (tasks)
+        for (int r=lt.blockRows[b]; r<lt.blockRows[b+1]; r++)
+          if (lt.rowThread[r].hasAnyTask(selectionManager.getSelectedTasks()))
+            paintRow(g2d,st,r,fm,true);
     }
-    updatePanelSize(y0);
   }
 
-  private void drawTaskSymbol(Graphics2D g2d, TaskInstance t, int width, int y, ProcessInstance p, FontMetrics fm) {
-    if (t.actual == null || t.actual.start == null) return;
-    int x1 = getXForTime(t.actual.start, width);
-    int x2 = getXForTime(t.actual.end, width);
+  /**
+   * Paints the line of a thread and the task symbols; if 'selected' is true, also the highlighting
+   * of the thread and the marks of the selected tasks.
+   */
+  private void paintRow(Graphics2D g2d, TileState st, int r, FontMetrics fm, boolean selected) {
+    TimelineLayout lt=st.layout;
+    int y=lt.rowY[r], xLine=lt.rowXLine[r], xStartThread=lt.rowXStart[r], xEndThread=lt.rowXEnd[r];
 
-    boolean isSelected = selectionManager != null && selectionManager.isTaskSelected(t);
+    if (selected) {
+      g2d.setColor(threadHighlightColor);
+      g2d.fillRect(xLine, y - 2, xEndThread - xLine, 5);
+    }
+    Color roleColor = st.roleColors.getOrDefault(lt.rowRole[r], Color.gray);
+    g2d.setColor(roleColor);
+    // Pre-activity: Thin and Dashed
+    g2d.setStroke(dashedStroke);
+    g2d.drawLine(xLine, y, xStartThread, y);
+    // Activity phase: Thin and Solid
+    g2d.setStroke(solidStroke);
+    g2d.drawLine(xStartThread, y, xEndThread, y);
+
+    boolean strip=lt.rowBins[r]<lt.rowBins[r+1];
+    if (strip)
+      drawDensityStrip(g2d, lt, r, y);
+    // the tasks of a density strip are drawn separately only when they are selected
+    if (!strip || selected)
+      for (int s=lt.rowSymbols[r]; s<lt.rowSymbols[r+1]; s++) {
+        boolean isSelected=selected && selectionManager.isTaskSelected(lt.symTask[s]);
+        if (!strip || isSelected)
+          drawTaskSymbol(g2d, lt.symCode[s], lt.symDelayed[s], lt.symX1[s], lt.symX2[s], y, st.symbolMode, fm,
+              isSelected);
+      }
+  }
+
+  /**
+   * Draws the bins of the density strip of a row: the opacity grows with the logarithm of the count
+   * relative to the greatest count in the row; the share of the delayed tasks is drawn in the lower
+   * part of the bin in the color of the delayed tasks.
+   */
+  private static void drawDensityStrip(Graphics2D g2d, TimelineLayout lt, int r, int y) {
+    if (stripColors==null) {
+      Color colors[]=new Color[8], delayedColors[]=new Color[8];
+      for (int i=0; i<colors.length; i++) {
+        int alpha=64+i*(255-64)/(colors.length-1);
+        colors[i]=new Color(taskSymbolColor.getRed(),taskSymbolColor.getGreen(),taskSymbolColor.getBlue(),alpha);
+        delayedColors[i]=new Color(delayedTaskColor.getRed(),delayedTaskColor.getGreen(),
+            delayedTaskColor.getBlue(),alpha);
+      }
+      stripDelayedColors=delayedColors;
+      stripColors=colors;
+    }
+    int binWidth=Math.max(1,stripBinWidth), nLevels=stripColors.length;
+    double logMax=Math.log1p(lt.rowMaxBinCount[r]);
+    for (int k=lt.rowBins[r]; k<lt.rowBins[r+1]; k++) {
+      int level=(int)Math.round((nLevels-1)*Math.log1p(lt.binCount[k])/logMax);
+      g2d.setColor(stripColors[level]);
+      g2d.fillRect(lt.binX[k], y - markRadius, binWidth, markDiameter);
+      if (lt.binDelayed[k]>0) {
+        int h=Math.max(1,Math.round((float)markDiameter*lt.binDelayed[k]/lt.binCount[k]));
+        g2d.setColor(stripDelayedColors[level]);
+        g2d.fillRect(lt.binX[k], y + markRadius - h, binWidth, h);
+      }
+    }
+  }
 
-    g2d.setColor((t.isDelayed)?delayedTaskColor:taskSymbolColor);
+  private void drawTaskSymbol(Graphics2D g2d, String code, boolean isDelayed, int x1, int x2, int y,
+                              int symbolMode, FontMetrics fm, boolean isSelected) {
+    g2d.setColor((isDelayed)?delayedTaskColor:taskSymbolColor);
 
-    ActionType aType = gProc.actionTypes.get(t.actionType);
-    if (symbolMode == SYMBOL_CHAR && aType != null && aType.code != null) {
-      int dx = fm.stringWidth(aType.code) / 2;
-      g2d.drawString(aType.code, x1 - dx, y + fm.getHeight() / 2 - fm.getDescent());
+    if (symbolMode == SYMBOL_CHAR && code != null) {
+      int dx = fm.stringWidth(code) / 2;
+      g2d.drawString(code, x1 - dx, y + fm.getHeight() / 2 - fm.getDescent());
     } else {
       g2d.fillOval(x1 - markRadius, y - markRadius, markDiameter + x2 - x1, markDiameter);
     }
@@ -244,229 +377,49 @@ public class ProcessTimelinePanel extends TimelinePanel{
       g2d.drawOval(x1 - radius, y - radius, radius*2, radius*2);
       g2d.setStroke(str);
     }
-
-    Map<Rectangle, TaskInstance> taskAreas = processTaskAreas.computeIfAbsent(p.id, k -> new HashMap<>());
-    taskAreas.put(new Rectangle(x1 - markRadius - 3, y - markRadius - 3,
-        markDiameter + x2 - x1 + 6, markDiameter + 6), t);
-  }
-
-  public void paintByActors(Graphics g) {
-    int width = getWidth();
-    Graphics2D g2d = (Graphics2D) g;
-    Stroke defaultStroke = g2d.getStroke();
-    FontMetrics fm = g2d.getFontMetrics();
-    clearAreaMaps();
-
-    // Use the global list of actors, sorted by their overall involvement
-    List<Actor> sortedGlobalActors = gProc.getActorsSorted(gProc.actors.values());
-    int y0 = yTop + 2 * actorLineSpacing;
-
-    for (Actor actor : sortedGlobalActors) {
-      // 1. Group all threads for this actor across all processes
-      List<ThreadContext> actorThreadContexts = new ArrayList<>();
-      for (ProcessInstance p : gProc.processes) {
-        if (filterMode==SHOW_SELECTED && selectionManager!=null && !selectionManager.isProcessSelested(p.id))
-          continue;
-        if (p.threads.containsKey(actor.id)) {
-          actorThreadContexts.add(new ThreadContext(p, p.threads.get(actor.id)));
-        }
-      }
-
-      if (actorThreadContexts.isEmpty()) continue;
-
-      // 2. Order threads chronologically by the start date of the first action
-      actorThreadContexts.sort(Comparator.comparing(tc -> tc.thread.tasks.get(0).actual.start));
-
-      int currentY = y0;
-      int minActorX = width, maxActorX = 0;
-
-      // Calculate the leftmost start point to place the vertical grouping line
-      for (ThreadContext tc : actorThreadContexts) {
-        TimeInterval tint=tc.process.getProcessLifetime();
-        int xStart = getXForTime(tint.start, width);
-        if (xStart < minActorX) minActorX = xStart;
-        tint=tc.thread.getLifetime();
-        int xEnd=getXForTime(tint.end, width);
-        if (xEnd>maxActorX) maxActorX=xEnd;
-      }
-
-      // 3. Draw vertical grouping line (similar to paintByProcesses)
-      g.setColor(Color.darkGray);
-      g2d.setStroke(defaultStroke);
-      int vLineHeight = (actorThreadContexts.size() - 1) * actorLineSpacing;
-      g.drawLine(minActorX, y0 + actorLineSpacing / 2,
-          minActorX, y0 + actorLineSpacing / 2 + vLineHeight);
-
-      // 4. Draw each thread line
-      for (int i = 0; i < actorThreadContexts.size(); i++) {
-        ThreadContext tc = actorThreadContexts.get(i);
-        ProcessThread thread = tc.thread;
-        int y = y0 + i * actorLineSpacing + actorLineSpacing / 2;
-        currentY = y;
-
-        TimeInterval tLife = thread.getLifetime();
-        int xStartThread = getXForTime(tLife.start, width);
-        int xEndThread = getXForTime(tLife.end, width);
-
-        // Process selection
-        if (filterMode==SHOW_ALL) {
-          boolean isProcessSelected = selectionManager != null && selectionManager.isProcessSelested(tc.process.id);
-          if (isProcessSelected) {
-            int xEndProcess = getXForTime(tc.process.getProcessLifetime().end, width);
-            g.setColor(processHighlightColor);
-            int hWidth = actorLineSpacing - 2;
-            g.fillRect(minActorX, y - hWidth / 2, xEndProcess - minActorX, hWidth);
-          }
-        }
-
-        // Thread selection
-        boolean isThreadSelected = selectionManager != null && selectionManager.hasTaskSelection() &&
-            thread.hasAnyTask(selectionManager.getSelectedTasks());
-        if (isThreadSelected) {
-          g.setColor(threadHighlightColor);
-          g.fillRect(minActorX, y - 2, xEndThread - minActorX, 5);
-        }
-        Color roleColor = actorRoleColors.getOrDefault(thread.role, Color.gray);
-        g.setColor(roleColor);
-        g2d.setStroke(dashedStroke);
-        g.drawLine(minActorX, y, xStartThread, y);
-        g2d.setStroke(solidStroke);
-        g.drawLine(xStartThread, y, xEndThread, y);
-
-        // Draw tasks
-        for (int tIdx=0; tIdx<thread.tasks.size(); tIdx++) {
-          TaskInstance t=thread.tasks.get(tIdx);
-          if (tIdx>0) {
-            TaskInstance tPrev=thread.tasks.get(tIdx-1);
-            if (tPrev.isDelayed &&
-                getXForTime(t.actual.start,width)-getXForTime(tPrev.actual.start,width)<=markRadius)
-              continue;
-          }
-          if (!t.isDelayed && tIdx+1<thread.tasks.size()) {
-            TaskInstance tNext=thread.tasks.get(tIdx+1);
-            if (getXForTime(tNext.actual.start,width)-getXForTime(t.actual.start,width)<=markRadius)
-              continue;
-          }
-          drawTaskSymbol(g2d, t, width, y, tc.process, fm);
-        }
-
-        // Map areas for tooltips
-        Map<Rectangle, Actor> actorProcAreas = processActorAreas.computeIfAbsent(tc.process.id, k -> new HashMap<>());
-        actorProcAreas.put(new Rectangle(minActorX, y - markRadius, maxActorX - minActorX, markDiameter), actor);
-      }
-
-      // Map global actor area
-      actorAreas.put(new Rectangle(minActorX - 3, y0 - 3, maxActorX - minActorX + 6, currentY - y0 + 6), actor);
-      y0 = currentY + actorLineSpacing * 4;
-    }
-    updatePanelSize(y0);
   }
 
   private boolean handleMouseClick(Point pt) {
     if (selectionManager == null) return false;
+    TimelineLayout lt=getLayoutModel();
 
     // 1. Check for Task Selection (High priority/Smallest targets)
-    for (String processId : processTaskAreas.keySet()) {
-      Map<Rectangle, TaskInstance> taskMap = processTaskAreas.get(processId);
-      for (Map.Entry<Rectangle, TaskInstance> entry : taskMap.entrySet()) {
-        if (entry.getKey().contains(pt)) {
-          selectionManager.toggleTasks(Collections.singletonList(entry.getValue()));
-          return true; // Selection handled
-        }
-      }
+    int s=lt.findSymbol(pt,null);
+    if (s>=0) {
+      selectionManager.toggleTasks(Collections.singletonList(lt.symTask[s]));
+      return true; // Selection handled
     }
 
     // 2. Check for Thread Selection (Low priority/Line targets)
-    for (String processId : processActorAreas.keySet()) {
-      Map<Rectangle, Actor> actorMap = processActorAreas.get(processId);
-      for (Map.Entry<Rectangle, Actor> entry : actorMap.entrySet()) {
-        if (entry.getKey().contains(pt)) {
-          Actor actor = entry.getValue();
-          ProcessInstance p = findProcessById(processId);
-          if (p != null && p.threads.containsKey(actor.id)) {
-            // Get all tasks associated with this specific actor's thread in this process
-            List<TaskInstance> threadTasks = p.threads.get(actor.id).tasks;
-            selectionManager.toggleTasks(threadTasks);
-          }
-          return true; // Selection handled
-        }
-      }
+    int r=lt.findRow(pt);
+    if (r>=0) {
+      // Get all tasks associated with this specific actor's thread in this process
+      selectionManager.toggleTasks(lt.rowThread[r].tasks);
+      return true; // Selection handled
     }
     return false;
  }
 
-  /**
-   * Helper to retrieve the process instance object by its ID string.
-   */
-  private ProcessInstance findProcessById(String id) {
-    for (ProcessInstance p : gProc.processes) {
-      if (p.id.equals(id)) return p;
-    }
-    return null;
-  }
-
-  /**
-   * Helper class to keep a thread associated with its process context
-   */
-  private static class ThreadContext {
-    ProcessInstance process;
-    ProcessThread thread;
-    ThreadContext(ProcessInstance p, ProcessThread t) {
-      this.process = p;
-      this.thread = t;
-    }
-  }
-
   public String getToolTipText(Point pt) {
     if (pt==null)
       return null;
-    if (groupingMode ==PROCESS_MODE) {
-      if (processAreas == null)
-        return super.getToolTipText(pt);
-      for (Map.Entry<Rectangle, ProcessInstance> entry : processAreas.entrySet()) {
-        if (entry.getKey().contains(pt)) {
-          ProcessInstance p = entry.getValue();
-          //check if the mouse points at a specific task
-          Map<Rectangle, TaskInstance> taskAreas = processTaskAreas.get(p.id);
-          if (taskAreas != null)
-            for (Map.Entry<Rectangle, TaskInstance> taskEntry : taskAreas.entrySet())
-              if (taskEntry.getKey().contains(pt))
-                return getTextForTask(p,taskEntry.getValue());
-          Map<Rectangle, Actor> actorProcAreas = processActorAreas.get(p.id);
-          if (actorProcAreas != null)
-            for (Map.Entry<Rectangle, Actor> actorEntry : actorProcAreas.entrySet())
-              if (actorEntry.getKey().contains(pt))
-                return getTextForActor(p,actorEntry.getValue());
-
-          String text = String.format("<html>Process ID: <b>%s</b><br>Process type: <b>%s</b></html>",
-              p.id, p.type);
-          return text;
-        }
+    TimelineLayout lt=getLayoutModel();
+    int b=lt.findBlock(pt);
+    if (b>=0) {
+      int rows[]={-1};
+      int s=lt.findSymbol(b,pt,rows);
+      if (s>=0)
+        return getTextForTask(lt.rowProcess[rows[0]],lt.symTask[s]);
+      int r=lt.findRow(b,pt);
+      if (r>=0)
+        return getTextForActor(lt.rowProcess[r],lt.rowThread[r].actor);
+      if (groupingMode ==PROCESS_MODE) {
+        ProcessInstance p = lt.blockProcess[b];
+        return String.format("<html>Process ID: <b>%s</b><br>Process type: <b>%s</b></html>",
+            p.id, p.type);
       }
-    }
-    if (groupingMode ==ACTOR_MODE) {
-      if (actorAreas!=null)
-        if (actorAreas != null)
-          for (Map.Entry<Rectangle, Actor> actorEntry : actorAreas.entrySet())
-            if (actorEntry.getKey().contains(pt)) {
-              Actor actor=actorEntry.getValue();
-              if (processActorAreas!=null)
-                for (ProcessInstance p: gProc.processes) {
-                  Map<Rectangle, Actor> actorProcAreas = processActorAreas.get(p.id);
-                  if (actorProcAreas != null && actorProcAreas.containsValue(actor)) {
-                    //check if the mouse points at a specific task
-                    Map<Rectangle, TaskInstance> taskAreas = processTaskAreas.get(p.id);
-                    if (taskAreas != null)
-                      for (Map.Entry<Rectangle, TaskInstance> taskEntry : taskAreas.entrySet())
-                        if (taskEntry.getKey().contains(pt))
-                          return getTextForTask(p,taskEntry.getValue());
-                    for (Map.Entry<Rectangle, Actor> aE : actorProcAreas.entrySet())
-                      if (aE.getValue().equals(actor) && aE.getKey().contains(pt))
-                        return getTextForActor(p, actor);
-                  }
-                }
-              return getTextForActor(null, actorEntry.getValue());
-            }
+      if (groupingMode ==ACTOR_MODE)
+        return getTextForActor(null, lt.blockActor[b]);
     }
     return super.getToolTipText(pt);
   }
@@ -486,10 +439,14 @@ public class ProcessTimelinePanel extends TimelinePanel{
       String role=p.threads.get(primaryActor.id).role;
       text += String.format("<br>Primary actor: <b>%s</b> in role <b>%s</b>",
           primaryActor.id, role);
+      // the role may have been changed after the task
+      String roleThen=p.roleHistory.getRole(primaryActor.id,t.actual.start);
+      if (roleThen!=null && !roleThen.equals(role))
+        text += String.format(" (<b>%s</b> at the time of the task)", roleThen);
       if (t.actorsInvolved.size() > 1)
         for (int i = 1; i < t.actorsInvolved.size(); i++) {
           Actor a = t.actorsInvolved.get(i);
-          String r=p.roleAssignments.get(a.id);
+          String r=p.getRoleAt(a.id,t.actual.start);
           if (r==null)
             r=a.generalRole;
           text += String.format("<br>Involved actor: <b>%s as %s</b>",a.id,r);
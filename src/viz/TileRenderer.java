@@ -0,0 +1,248 @@
+package viz;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders the content of a panel in horizontal tiles of a fixed height in background threads
+ * and keeps the images of the tiles in a cache limited by memory, dropping the least recently
+ * used tiles first. When painting, the panel draws the tiles that are ready and requests the
+ * missing ones; when a tile is ready, the area of the tile is repainted.
+ * What is painted in the tiles is given as a state object (e.g. the layout and the drawing
+ * options) that must not change after it has been given to setState; each new state increases
+ * the version of the tiles. The tiles of an older version are drawn until the new ones are ready,
+ * so that the picture does not flicker when the data are updated.
+ * The images are opaque; the panel draws its background only where no tile is available
+ * (see hasTiles) and the selection highlights after the tiles.
+ */
+
+public class TileRenderer<S> {
+  public interface TilePainter<S> {
+    /**
+     * Paints the part of the panel from y to y+height in the given state. The graphics is
+     * translated and clipped so that the coordinates are the same as in the panel.
+     * Called in a background thread.
+     */
+    void paintTile(Graphics2D g, S state, int width, int y, int height);
+  }
+
+  public static int defaultTileHeight=256;
+  public static long defaultMaxCacheBytes=64L*1024*1024;
+
+  private static ExecutorService pool=null;
+
+  private static synchronized ExecutorService getPool() {
+    if (pool==null) {
+      int nThreads=Math.max(1,Runtime.getRuntime().availableProcessors()-1);
+      pool=Executors.newFixedThreadPool(nThreads, r -> {
+        Thread t=new Thread(r,"Tile renderer");
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY-1);
+        return t;
+      });
+    }
+    return pool;
+  }
+
+  private static class Tile {
+    int index, width;
+    long version;
+    BufferedImage image;
+
+    long getBytes() {
+      return 4L*image.getWidth()*image.getHeight();
+    }
+  }
+
+  private JComponent component=null;
+  private TilePainter<S> painter=null;
+  public final int tileHeight;
+  public long maxCacheBytes=defaultMaxCacheBytes;
+
+  private S state=null;
+  private long version=0;
+  private Font font=null;
+
+  // Tiles by index in the order of use
+  private LinkedHashMap<Integer,Tile> tiles=new LinkedHashMap<>(64,0.75f,true);
+  private long cacheBytes=0;
+  // Tiles requested and not yet rendered, with the versions and widths
+  private Map<Integer,long[]> pending=new HashMap<>();
+  // Tiles needed in the last painting; the requests for other tiles are dropped
+  private int firstWanted=0, lastWanted=-1;
+
+  public TileRenderer(JComponent component, TilePainter<S> painter) {
+    this(component,painter,defaultTileHeight);
+  }
+
+  public TileRenderer(JComponent component, TilePainter<S> painter, int tileHeight) {
+    this.component=component;
+    this.painter=painter;
+    this.tileHeight=Math.max(1,tileHeight);
+  }
+
+  public synchronized S getState() {
+    return state;
+  }
+
+  /**
+   * Sets the state to be painted in the tiles; all tiles will be rendered anew.
+   */
+  public synchronized void setState(S state) {
+    this.state=state;
+    ++version;
+  }
+
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the indexes of the first and last tiles intersecting the clip area of the graphics or null.
+   */
+  private int[] getTilesInClip(Graphics g, int height) {
+    if (height<=0)
+      return null;
+    Rectangle clip=g.getClipBounds();
+    int y1=(clip==null)?0:Math.max(0,clip.y), y2=(clip==null)?height:Math.min(height,clip.y+clip.height);
+    if (y2<=y1)
+      return null;
+    int range[]={y1/tileHeight,(y2-1)/tileHeight};
+    return range;
+  }
+
+  /**
+   * Whether there are images, possibly outdated, of the given width for all tiles in the clip area.
+   */
+  public synchronized boolean hasTiles(Graphics g, int width, int height) {
+    int range[]=getTilesInClip(g,height);
+    if (range==null)
+      return true;
+    for (int i=range[0]; i<=range[1]; i++) {
+      Tile tile=tiles.get(i);
+      if (tile==null || tile.width!=width)
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Draws the tiles intersecting the clip area of the graphics (in the coordinates of the panel)
+   * and requests the rendering of those that are missing or outdated.
+   * Returns true if all of them were up to date.
+   */
+  public boolean paint(Graphics g, int width, int height) {
+    int range[]=(width<=0)?null:getTilesInClip(g,height);
+    if (range==null)
+      return true;
+    int first=range[0], last=range[1];
+    boolean complete=true;
+    font=component.getFont();
+    synchronized (this) {
+      firstWanted=first;
+      lastWanted=last;
+    }
+    for (int i=first; i<=last; i++) {
+      Tile tile;
+      long v;
+      synchronized (this) {
+        tile=tiles.get(i);
+        v=version;
+      }
+      if (tile!=null && tile.width==width)
+        g.drawImage(tile.image,0,i*tileHeight,null);
+      if (tile==null || tile.width!=width || tile.version!=v) {
+        complete=false;
+        request(i,width,Math.min(tileHeight,height-i*tileHeight));
+      }
+    }
+    return complete;
+  }
+
+  private void request(int index, int width, int height) {
+    S st;
+    long v;
+    synchronized (this) {
+      if (state==null)
+        return;
+      long p[]=pending.get(index);
+      if (p!=null && p[0]==version && p[1]==width)
+        return;
+      long req[]={version,width};
+      pending.put(index,req);
+      st=state;
+      v=version;
+    }
+    Font f=font;
+    getPool().execute(() -> render(index,width,height,st,v,f));
+  }
+
+  private void render(int index, int width, int height, S st, long v, Font f) {
+    synchronized (this) {
+      long p[]=pending.get(index);
+      boolean wanted=index>=firstWanted && index<=lastWanted;
+      if (p==null || p[0]!=v || p[1]!=width || !wanted) {
+        if (p!=null && p[0]==v && p[1]==width)
+          pending.remove(index);
+        return;
+      }
+    }
+    int y=index*tileHeight;
+    BufferedImage image=new BufferedImage(width,height,BufferedImage.TYPE_INT_RGB);
+    Graphics2D g=image.createGraphics();
+    if (f!=null)
+      g.setFont(f);
+    g.translate(0,-y);
+    g.setClip(0,y,width,height);
+    try {
+      painter.paintTile(g,st,width,y,height);
+    } catch (RuntimeException ex) {
+      // the tile will be requested again in the next painting
+      System.out.println("Exception rendering a tile: "+ex);
+      g.dispose();
+      synchronized (this) {
+        pending.remove(index);
+      }
+      return;
+    }
+    g.dispose();
+    synchronized (this) {
+      long p[]=pending.get(index);
+      if (p!=null && p[0]==v && p[1]==width)
+        pending.remove(index);
+      Tile old=tiles.get(index);
+      if (old!=null && old.version>v)
+        return;
+      Tile tile=new Tile();
+      tile.index=index;
+      tile.width=width;
+      tile.version=v;
+      tile.image=image;
+      if (old!=null)
+        cacheBytes-=old.getBytes();
+      tiles.put(index,tile);
+      cacheBytes+=tile.getBytes();
+      for (Iterator<Tile> it=tiles.values().iterator(); it.hasNext() && cacheBytes>maxCacheBytes; ) {
+        Tile t=it.next();
+        if (t==tile)
+          break;
+        cacheBytes-=t.getBytes();
+        it.remove();
+      }
+    }
+    component.repaint(0,y,width,height);
+  }
+
+  /**
+   * Drops all tiles, e.g. when the panel is not shown any more.
+   */
+  public synchronized void clear() {
+    tiles.clear();
+    pending.clear();
+    cacheBytes=0;
+  }
+}
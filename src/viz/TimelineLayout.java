@@ -0,0 +1,490 @@
+package viz;
+
+import structures.*;
+
+import java.awt.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Geometry of the process timeline for a given width, grouping and filter: the blocks of processes
+ * or actors with their vertical spans, the rows of the threads with the positions of their lines,
+ * and the task symbols remaining after the suppression of overlapping symbols.
+ * When a thread has more tasks than can be shown by separate symbols at the given width
+ * (see ProcessTimelinePanel.lodTasksPerPixel), the row gets a density strip: the numbers of the tasks
+ * and of the delayed tasks in bins of a few pixels. The row still has the symbols of all its tasks,
+ * without the suppression of overlaps, for hit-testing and for showing the selected tasks;
+ * the other symbols of a strip are not painted.
+ * The layout is not changed after it has been made; painting and hit-testing read it, and a new
+ * layout is made only when the width, grouping, filter or data change (see ProcessTimelinePanel).
+ * What is painted of the threads and tasks (roles, codes of the action types, delays) is copied
+ * into the layout, so that the tiles can be painted in other threads without reading the model,
+ * which may be changed meanwhile (see LogTailer).
+ */
+
+public class TimelineLayout {
+  public final int width, groupingMode, filterMode;
+  // The y after the last block
+  public final int height;
+
+  // Blocks: the rows of block b are from blockRows[b] to blockRows[b+1]-1
+  int nBlocks=0;
+  ProcessInstance blockProcess[]=null;
+  Actor blockActor[]=null;
+  int blockY0[]=null, blockMaxY[]=null, blockX1[]=null, blockX2[]=null, blockRows[]=null;
+  // Delays of the phases in the processes: the overlays of block b are from blockOverlays[b] to blockOverlays[b+1]-1
+  int blockOverlays[]=null;
+  Color overlayColor[]=null;
+  int overlayX1[]=null, overlayX2[]=null;
+
+  // Rows: the symbols of row r are from rowSymbols[r] to rowSymbols[r+1]-1
+  int nRows=0;
+  ProcessInstance rowProcess[]=null;
+  ProcessThread rowThread[]=null;
+  String rowRole[]=null;
+  // y of the line, start of the dashed line, start and end of the thread, end of the process,
+  // end of the hit area of the row
+  int rowY[]=null, rowXLine[]=null, rowXStart[]=null, rowXEnd[]=null, rowXEndProcess[]=null, rowHitX2[]=null;
+  int rowSymbols[]=null;
+  // Density strips: the non-empty bins of row r are from rowBins[r] to rowBins[r+1]-1
+  int rowBins[]=null, rowMaxBinCount[]=null;
+  int binX[]=null, binCount[]=null, binDelayed[]=null;
+  // The greatest difference between the ends and starts of the symbols in each row
+  int rowMaxSymWidth[]=null;
+
+  // Symbols of the tasks
+  int nSymbols=0;
+  TaskInstance symTask[]=null;
+  int symX1[]=null, symX2[]=null;
+  // The codes of the action types (null if there is none) and the delays of the tasks
+  String symCode[]=null;
+  boolean symDelayed[]=null;
+  // Index for hit-testing: the symbols of each row ordered by x1 (in the same ranges as rowSymbols)
+  int symByX[]=null;
+
+  private TimelineLayout(int width, int groupingMode, int filterMode, int height) {
+    this.width=width; this.groupingMode=groupingMode; this.filterMode=filterMode; this.height=height;
+  }
+
+  /**
+   * Accumulates the layout while it is being made.
+   */
+  private static class Builder {
+    TimelinePanel panel;
+    int width;
+    Map<String,ActionType> actionTypes;
+    List<ProcessInstance> bProcess=new ArrayList<>();
+    List<Actor> bActor=new ArrayList<>();
+    IntList bY0=new IntList(), bMaxY=new IntList(), bX1=new IntList(), bX2=new IntList(),
+        bRows=new IntList(), bOverlays=new IntList();
+    List<Color> oColor=new ArrayList<>();
+    IntList oX1=new IntList(), oX2=new IntList();
+    List<ProcessInstance> rProcess=new ArrayList<>();
+    List<ProcessThread> rThread=new ArrayList<>();
+    List<String> rRole=new ArrayList<>(), sCode=new ArrayList<>();
+    IntList rY=new IntList(), rXLine=new IntList(), rXStart=new IntList(), rXEnd=new IntList(),
+        rXEndProcess=new IntList(), rHitX2=new IntList(), rSymbols=new IntList();
+    List<TaskInstance> sTask=new ArrayList<>();
+    IntList sX1=new IntList(), sX2=new IntList(), sDelayed=new IntList(), sByX=new IntList(),
+        rMaxSymWidth=new IntList();
+    // the x positions of the tasks of the current thread
+    int xs[]=new int[16];
+    IntList bnX=new IntList(), bnCount=new IntList(), bnDelayed=new IntList(), rBins=new IntList(),
+        rMaxBinCount=new IntList();
+    // the counts in the bins of the current row
+    int counts[]=new int[64], delayed[]=new int[64];
+
+    int getX(java.time.LocalDateTime time) {
+      return panel.getXForTime(time,width);
+    }
+
+    void startBlock(ProcessInstance p, Actor a, int y0, int maxY, int x1, int x2) {
+      bProcess.add(p); bActor.add(a);
+      bY0.add(y0); bMaxY.add(maxY); bX1.add(x1); bX2.add(x2);
+      bRows.add(rY.size);
+      bOverlays.add(oX1.size);
+    }
+
+    void addRow(ProcessInstance p, ProcessThread thread, int y, int xLine, int xEndProcess, int hitX2) {
+      TimeInterval tLife=thread.getLifetime();
+      rProcess.add(p); rThread.add(thread); rRole.add(thread.role);
+      rY.add(y); rXLine.add(xLine);
+      rXStart.add(getX(tLife.start)); rXEnd.add(getX(tLife.end));
+      rXEndProcess.add(xEndProcess);
+      rHitX2.add((hitX2<0)?rXEnd.a[rXEnd.size-1]:hitX2);
+      rSymbols.add(sX1.size);
+      List<TaskInstance> tasks=thread.tasks;
+      int n=tasks.size();
+      if (xs.length<n)
+        xs=new int[Math.max(n,xs.length*2)];
+      for (int i=0; i<n; i++)
+        xs[i]=(tasks.get(i).actual==null)?0:getX(tasks.get(i).actual.start);
+      rBins.add(bnX.size);
+      int xStart=rXStart.a[rXStart.size-1], span=Math.max(1,rXEnd.a[rXEnd.size-1]-xStart+1);
+      boolean strip=n>=ProcessTimelinePanel.lodMinTasks && n>ProcessTimelinePanel.lodTasksPerPixel*span;
+      if (strip)
+        addBins(tasks,xStart,span);
+      else
+        rMaxBinCount.add(0);
+      // a symbol is omitted when it would be covered by the next one, unless it is delayed,
+      // and when it would cover a delayed previous one; a strip keeps all symbols
+      for (int tIdx=0; tIdx<n; tIdx++) {
+        TaskInstance t=tasks.get(tIdx);
+        if (!strip && tIdx>0 && tasks.get(tIdx-1).isDelayed && xs[tIdx]-xs[tIdx-1]<=ProcessTimelinePanel.markRadius)
+          continue;
+        if (!strip && !t.isDelayed && tIdx+1<n && xs[tIdx+1]-xs[tIdx]<=ProcessTimelinePanel.markRadius)
+          continue;
+        if (t.actual == null || t.actual.start == null)
+          continue;
+        sTask.add(t);
+        sX1.add(xs[tIdx]);
+        sX2.add(getX(t.actual.end));
+        ActionType aType=(actionTypes==null)?null:actionTypes.get(t.actionType);
+        sCode.add((aType==null)?null:aType.code);
+        sDelayed.add((t.isDelayed)?1:0);
+      }
+      // the symbols are usually in the order of x already
+      int from=rSymbols.a[rSymbols.size-1], to=sX1.size, maxW=0;
+      boolean ordered=true;
+      for (int i=from; i<to; i++) {
+        maxW=Math.max(maxW,sX2.a[i]-sX1.a[i]);
+        ordered=ordered && (i==from || sX1.a[i-1]<=sX1.a[i]);
+      }
+      rMaxSymWidth.add(maxW);
+      if (ordered)
+        for (int i=from; i<to; i++)
+          sByX.add(i);
+      else {
+        Integer order[]=new Integer[to-from];
+        for (int i=from; i<to; i++)
+          order[i-from]=i;
+        Arrays.sort(order,Comparator.comparingInt(i -> sX1.a[i]));
+        for (Integer i:order)
+          sByX.add(i);
+      }
+    }
+
+    /**
+     * Counts the tasks of the current row in bins of ProcessTimelinePanel.stripBinWidth pixels
+     * starting from xStart and adds the non-empty bins.
+     */
+    void addBins(List<TaskInstance> tasks, int xStart, int span) {
+      int binWidth=Math.max(1,ProcessTimelinePanel.stripBinWidth), nBins=(span+binWidth-1)/binWidth;
+      if (counts.length<nBins) {
+        counts=new int[Math.max(nBins,counts.length*2)];
+        delayed=new int[counts.length];
+      }
+      Arrays.fill(counts,0,nBins,0);
+      Arrays.fill(delayed,0,nBins,0);
+      for (int i=0; i<tasks.size(); i++) {
+        TaskInstance t=tasks.get(i);
+        if (t.actual == null || t.actual.start == null)
+          continue;
+        int bin=Math.max(0,Math.min(nBins-1,(xs[i]-xStart)/binWidth));
+        ++counts[bin];
+        if (t.isDelayed)
+          ++delayed[bin];
+      }
+      int max=0;
+      for (int bin=0; bin<nBins; bin++)
+        if (counts[bin]>0) {
+          bnX.add(xStart+bin*binWidth);
+          bnCount.add(counts[bin]);
+          bnDelayed.add(delayed[bin]);
+          max=Math.max(max,counts[bin]);
+        }
+      rMaxBinCount.add(max);
+    }
+  }
+
+  /**
+   * A growable array of ints.
+   */
+  private static class IntList {
+    int a[]=new int[64], size=0;
+
+    void add(int v) {
+      if (size>=a.length)
+        a=Arrays.copyOf(a,size*2);
+      a[size++]=v;
+    }
+
+    int[] toArray(int last) {
+      int res[]=Arrays.copyOf(a,size+1);
+      res[size]=last;
+      return res;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(a,size);
+    }
+  }
+
+  /**
+   * Makes the layout of the processes or actors of the model for the panel of the given width.
+   */
+  public static TimelineLayout build(GlobalProcess gProc, TimelinePanel panel, Map<String,Color> phaseColors,
+                                     int groupingMode, int filterMode, SelectionManager selectionManager,
+                                     int width, int yStart) {
+    int spacing=ProcessTimelinePanel.actorLineSpacing;
+    Builder b=new Builder();
+    b.panel=panel;
+    b.width=width;
+    b.actionTypes=gProc.actionTypes;
+    boolean onlySelected=filterMode==ProcessTimelinePanel.SHOW_SELECTED && selectionManager!=null;
+    int y0=yStart;
+    if (groupingMode==ProcessTimelinePanel.PROCESS_MODE)
+      for (ProcessInstance p : gProc.processes) {
+        if (onlySelected && !selectionManager.isProcessSelested(p.id))
+          continue;
+        TimeInterval pLife = p.getProcessLifetime();
+        int xStartProcess = b.getX(pLife.start);
+        int xEndProcess = b.getX(pLife.end);
+        int nThreads=p.threads.size();
+        int maxY=y0+(nThreads-1)*spacing;
+        if (nThreads>0)
+          maxY+=spacing / 2;
+        b.startBlock(p,null,y0,maxY,xStartProcess,xEndProcess);
+        if (p.hasPhaseCompletenessDates())
+          for (Phase ph:gProc.phases.values()) {
+            LocalDate d=p.getPhaseCompletenessDate(ph.name);
+            if (d!=null && d.isAfter(ph.endDate)) {
+              int x2=b.getX(d.atTime(23,59,59)),
+                  x1=b.getX(ph.endDate.atTime(23,59,59));
+              if (x2>x1) {
+                Color c=phaseColors.get(ph.name);
+                b.oColor.add(new Color(c.getRed(),c.getGreen(),c.getBlue(),128));
+                b.oX1.add(x1);
+                b.oX2.add(x2);
+              }
+            }
+          }
+        int i=0;
+        for (ProcessThread thread:p.threads.values()) {
+          int y = y0 + i * spacing + spacing / 2;
+          b.addRow(p,thread,y,xStartProcess,xEndProcess,-1);
+          ++i;
+        }
+        y0 = maxY + spacing * 4;
+      }
+    else
+    if (groupingMode==ProcessTimelinePanel.ACTOR_MODE) {
+      ActorIndex actorIndex = gProc.getActorIndex();
+      List<ActorIndex.Involvement> threads=new ArrayList<>();
+      for (Actor actor : actorIndex.getSortedActors()) {
+        // all threads of this actor across all processes
+        threads.clear();
+        for (ActorIndex.Involvement inv : actorIndex.getInvolvements(actor.id))
+          if (!onlySelected || selectionManager.isProcessSelested(inv.process.id))
+            threads.add(inv);
+        if (threads.isEmpty()) continue;
+        // the threads are ordered chronologically by the start date of the first action
+        threads.sort(Comparator.comparing(inv -> inv.thread.tasks.get(0).actual.start));
+        int minActorX = width, maxActorX = 0;
+        for (ActorIndex.Involvement inv : threads) {
+          minActorX=Math.min(minActorX,b.getX(inv.process.getProcessLifetime().start));
+          maxActorX=Math.max(maxActorX,b.getX(inv.thread.getLifetime().end));
+        }
+        int maxY=y0+(threads.size()-1)*spacing+spacing / 2;
+        b.startBlock(null,actor,y0,maxY,minActorX,maxActorX);
+        for (int i=0; i<threads.size(); i++) {
+          ActorIndex.Involvement inv=threads.get(i);
+          b.addRow(inv.process,inv.thread,y0 + i * spacing + spacing / 2,minActorX,
+              b.getX(inv.process.getProcessLifetime().end),maxActorX);
+        }
+        y0 = maxY + spacing * 4;
+      }
+    }
+
+    TimelineLayout layout=new TimelineLayout(width,groupingMode,filterMode,y0);
+    layout.nBlocks=b.bY0.size;
+    layout.blockProcess=b.bProcess.toArray(new ProcessInstance[0]);
+    layout.blockActor=b.bActor.toArray(new Actor[0]);
+    layout.blockY0=b.bY0.toArray();
+    layout.blockMaxY=b.bMaxY.toArray();
+    layout.blockX1=b.bX1.toArray();
+    layout.blockX2=b.bX2.toArray();
+    layout.blockRows=b.bRows.toArray(b.rY.size);
+    layout.blockOverlays=b.bOverlays.toArray(b.oX1.size);
+    layout.overlayColor=b.oColor.toArray(new Color[0]);
+    layout.overlayX1=b.oX1.toArray();
+    layout.overlayX2=b.oX2.toArray();
+    layout.nRows=b.rY.size;
+    layout.rowProcess=b.rProcess.toArray(new ProcessInstance[0]);
+    layout.rowThread=b.rThread.toArray(new ProcessThread[0]);
+    layout.rowRole=b.rRole.toArray(new String[0]);
+    layout.rowY=b.rY.toArray();
+    layout.rowXLine=b.rXLine.toArray();
+    layout.rowXStart=b.rXStart.toArray();
+    layout.rowXEnd=b.rXEnd.toArray();
+    layout.rowXEndProcess=b.rXEndProcess.toArray();
+    layout.rowHitX2=b.rHitX2.toArray();
+    layout.rowSymbols=b.rSymbols.toArray(b.sX1.size);
+    layout.rowMaxSymWidth=b.rMaxSymWidth.toArray();
+    layout.rowBins=b.rBins.toArray(b.bnX.size);
+    layout.rowMaxBinCount=b.rMaxBinCount.toArray();
+    layout.binX=b.bnX.toArray();
+    layout.binCount=b.bnCount.toArray();
+    layout.binDelayed=b.bnDelayed.toArray();
+    layout.nSymbols=b.sX1.size;
+    layout.symByX=b.sByX.toArray();
+    layout.symTask=b.sTask.toArray(new TaskInstance[0]);
+    layout.symX1=b.sX1.toArray();
+    layout.symX2=b.sX2.toArray();
+    layout.symCode=b.sCode.toArray(new String[0]);
+    layout.symDelayed=new boolean[layout.nSymbols];
+    for (int i=0; i<layout.nSymbols; i++)
+      layout.symDelayed[i]=b.sDelayed.a[i]!=0;
+    return layout;
+  }
+
+  public int getNBlocks() {
+    return nBlocks;
+  }
+
+  /**
+   * Returns the index of the first block whose rows, extended by the margin, reach the y or come after it.
+   */
+  public int getFirstBlockFrom(int y, int margin) {
+    int low=0, high=nBlocks-1;
+    while (low<=high) {
+      int mid=(low+high)>>>1;
+      if (blockMaxY[mid]+margin<y)
+        low=mid+1;
+      else
+        high=mid-1;
+    }
+    return low;
+  }
+
+  /**
+   * Returns the hit area of the block: the span of its rows with a margin of 3 pixels.
+   */
+  public Rectangle getBlockArea(int b) {
+    return new Rectangle(blockX1[b] - 3, blockY0[b] - 3, blockX2[b] - blockX1[b] + 6, blockMaxY[b] - blockY0[b] + 6);
+  }
+
+  /**
+   * Returns the block whose area contains the point or -1.
+   */
+  public int findBlock(Point pt) {
+    int b=getFirstBlockFrom(pt.y,3);
+    return (b<nBlocks && getBlockArea(b).contains(pt))?b:-1;
+  }
+
+  public Rectangle getRowArea(int r) {
+    return new Rectangle(rowXLine[r], rowY[r] - ProcessTimelinePanel.markRadius,
+        rowHitX2[r] - rowXLine[r], ProcessTimelinePanel.markDiameter);
+  }
+
+  public Rectangle getSymbolArea(int s, int y) {
+    int r=ProcessTimelinePanel.markRadius, d=ProcessTimelinePanel.markDiameter;
+    return new Rectangle(symX1[s] - r - 3, y - r - 3, d + symX2[s] - symX1[s] + 6, d + 6);
+  }
+
+  /**
+   * Returns the first row of the block whose line is at y or below it.
+   */
+  private int getFirstRowFrom(int b, int y) {
+    int low=blockRows[b], high=blockRows[b+1]-1;
+    while (low<=high) {
+      int mid=(low+high)>>>1;
+      if (rowY[mid]<y)
+        low=mid+1;
+      else
+        high=mid-1;
+    }
+    return low;
+  }
+
+  /**
+   * Returns the row of the given block whose line area contains the point or -1.
+   */
+  public int findRow(int b, Point pt) {
+    if (b<0 || b>=nBlocks)
+      return -1;
+    int reach=ProcessTimelinePanel.markRadius;
+    for (int r=getFirstRowFrom(b,pt.y-reach); r<blockRows[b+1] && rowY[r]<=pt.y+reach; r++)
+      if (getRowArea(r).contains(pt))
+        return r;
+    return -1;
+  }
+
+  /**
+   * Returns the symbol of the given block whose area contains the point, or -1; 'rows' gets the row
+   * of the symbol. The areas of the symbols in neighbouring rows overlap; of several symbols,
+   * the one in the row nearest to the point and, within the row, the one painted last is taken.
+   * Only the rows within the reach of the symbols from the point are checked, and in each row
+   * only the symbols starting within the reach, found by a binary search in symByX.
+   */
+  public int findSymbol(int b, Point pt, int rows[]) {
+    if (b<0 || b>=nBlocks)
+      return -1;
+    int reach=ProcessTimelinePanel.markRadius+3;
+    int found=-1, minDist=Integer.MAX_VALUE;
+    for (int r=getFirstRowFrom(b,pt.y-reach); r<blockRows[b+1] && rowY[r]<=pt.y+reach; r++) {
+      int dist=Math.abs(rowY[r]-pt.y);
+      if (dist>minDist)
+        continue;
+      int s=findSymbolInRow(r,pt,reach);
+      if (s>=0) {
+        found=s;
+        minDist=dist;
+        if (rows!=null)
+          rows[0]=r;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns the symbol of the row painted last among those whose areas contain the point, or -1.
+   */
+  private int findSymbolInRow(int r, Point pt, int reach) {
+    int from=rowSymbols[r], to=rowSymbols[r+1];
+    // a symbol may contain the point only if its x1 is within [pt.x-reach-maxWidth, pt.x+reach]
+    int minX=pt.x-reach-rowMaxSymWidth[r];
+    int low=from, high=to-1;
+    while (low<=high) {
+      int mid=(low+high)>>>1;
+      if (symX1[symByX[mid]]<minX)
+        low=mid+1;
+      else
+        high=mid-1;
+    }
+    int found=-1;
+    for (int i=low; i<to && symX1[symByX[i]]<=pt.x+reach; i++) {
+      int s=symByX[i];
+      if (s>found && getSymbolArea(s,rowY[r]).contains(pt))
+        found=s;
+    }
+    return found;
+  }
+
+  /**
+   * Returns the symbol whose area contains the point in any block or -1; 'rows' gets the row of the symbol.
+   */
+  public int findSymbol(Point pt, int rows[]) {
+    int margin=ProcessTimelinePanel.markRadius+3;
+    for (int b=getFirstBlockFrom(pt.y,margin); b<nBlocks && blockY0[b]-margin<=pt.y; b++) {
+      int s=findSymbol(b,pt,rows);
+      if (s>=0)
+        return s;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the row whose line area contains the point in any block or -1.
+   */
+  public int findRow(Point pt) {
+    int margin=ProcessTimelinePanel.markRadius;
+    for (int b=getFirstBlockFrom(pt.y,margin); b<nBlocks && blockY0[b]-margin<=pt.y; b++) {
+      int r=findRow(b,pt);
+      if (r>=0)
+        return r;
+    }
+    return -1;
+  }
+}
@@ -254,6 +254,14 @@ public class TimelinePanel extends JPanel {
     if (phases == null || phases.isEmpty()) return;
 
     Graphics2D g2d = (Graphics2D) g;
+    updateGeometry(g2d);
+    paintPhaseBackgrounds(g2d, getWidth(), yTop, sectionHeight);
+  }
+
+  /**
+   * Computes the vertical positions for the current size of the panel and the areas of the phases.
+   */
+  protected void updateGeometry(Graphics2D g2d) {
     int width = getWidth();
     int height = getHeight();
 
@@ -266,6 +274,20 @@ public class TimelinePanel extends JPanel {
     else
       phaseAreas.clear();
 
+    for (int i = 0; i < phases.size(); i++) {
+      Phase p = phases.get(i);
+      int x1 = getXForTime(p.startDate.atStartOfDay(),width);
+      int x2 = getXForTime(p.endDate.atTime(23,59,59),width);
+      Rectangle r=new Rectangle(x1,yTop,x2-x1,sectionHeight);
+      phaseAreas.put(r,p);
+    }
+  }
+
+  /**
+   * Paints the backgrounds of the phases and the timeline axis; uses only the phases and the given
+   * sizes, so that it can also be called when rendering tiles in background threads.
+   */
+  protected void paintPhaseBackgrounds(Graphics2D g2d, int width, int yTop, int sectionHeight) {
     for (int i = 0; i < phases.size(); i++) {
       Phase p = phases.get(i);
       int x1 = getXForTime(p.startDate.atStartOfDay(),width);
@@ -279,8 +301,6 @@ public class TimelinePanel extends JPanel {
 
       g2d.setColor(Color.lightGray);
       g2d.drawRect(x1, yTop, x2-x1, sectionHeight);
-      Rectangle r=new Rectangle(x1,yTop,x2-x1,sectionHeight);
-      phaseAreas.put(r,p);
     }
 
     // Draw timeline axis